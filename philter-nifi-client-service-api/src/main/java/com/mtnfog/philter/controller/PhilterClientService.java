@@ -0,0 +1,47 @@
+/*
+ * Copyright 2021 Mountain Fog, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtnfog.philter.controller;
+
+import okhttp3.OkHttpClient;
+import org.apache.nifi.annotation.documentation.CapabilityDescription;
+import org.apache.nifi.annotation.documentation.Tags;
+import org.apache.nifi.controller.ControllerService;
+
+import java.util.List;
+
+/**
+ * A controller service that owns a single HTTP stack for communicating with Philter
+ * so that processors can share its connection pool and dispatcher.
+ */
+@Tags({"philter", "client", "http"})
+@CapabilityDescription("Provides a shared HTTP client for communicating with Philter.")
+public interface PhilterClientService extends ControllerService {
+
+    /**
+     * Gets the endpoints of the Philter API, one for each Philter replica.
+     * @return The endpoints of the Philter API.
+     */
+    List<String> getEndpoints();
+
+    /**
+     * Gets the shared HTTP client. Callers that need different settings should
+     * use {@link OkHttpClient#newBuilder()} which keeps the shared connection pool
+     * and dispatcher.
+     * @return The shared {@link OkHttpClient}.
+     */
+    OkHttpClient getOkHttpClient();
+
+}
@@ -0,0 +1,117 @@
+/*
+ * Copyright 2021 Mountain Fog, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtnfog.philter.cache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Computes the key a filter result is cached under from the content of a document
+ * and the settings that affect how Philter filters it.
+ *
+ * A cryptographic digest is used rather than a faster non-cryptographic hash because
+ * a collision would return another document's filtered text.
+ */
+public class ContentDigest {
+
+    private static final String ALGORITHM = "SHA-256";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final MessageDigest messageDigest;
+
+    /**
+     * Starts a digest over the settings that affect how Philter filters a document.
+     * @param filterProfileName The name of the filter profile.
+     * @param context The document context, or <code>null</code>.
+     * @param mimeType The MIME type of the content.
+     */
+    public ContentDigest(String filterProfileName, String context, String mimeType) {
+
+        try {
+            this.messageDigest = MessageDigest.getInstance(ALGORITHM);
+        } catch (NoSuchAlgorithmException ex) {
+            // Every Java platform is required to support SHA-256.
+            throw new IllegalStateException(ex);
+        }
+
+        update(filterProfileName);
+        update(context);
+        update(mimeType);
+
+    }
+
+    /**
+     * Adds the content of the document to the digest. The stream is not closed.
+     * @param in The content of the document.
+     * @return This digest.
+     * @throws IOException Thrown if the content cannot be read.
+     */
+    public ContentDigest update(InputStream in) throws IOException {
+
+        final byte[] buffer = new byte[8192];
+        int read;
+
+        while((read = in.read(buffer)) != -1) {
+            messageDigest.update(buffer, 0, read);
+        }
+
+        return this;
+
+    }
+
+    /**
+     * Completes the digest.
+     * @return The digest as a hexadecimal string.
+     */
+    public String toHex() {
+
+        final byte[] digest = messageDigest.digest();
+        final char[] hex = new char[digest.length * 2];
+
+        for(int i = 0; i < digest.length; i++) {
+            hex[i * 2] = HEX[(digest[i] >> 4) & 0xf];
+            hex[i * 2 + 1] = HEX[digest[i] & 0xf];
+        }
+
+        return new String(hex);
+
+    }
+
+    /**
+     * Adds a value to the digest.
+     * @param value The value, or <code>null</code>.
+     * @return This digest.
+     */
+    public ContentDigest update(String value) {
+
+        // Length-prefix each value so that different values can never produce the same bytes.
+        if(value == null) {
+            messageDigest.update(ByteBuffer.allocate(4).putInt(-1).array());
+        } else {
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            messageDigest.update(ByteBuffer.allocate(4).putInt(bytes.length).array());
+            messageDigest.update(bytes);
+        }
+
+        return this;
+
+    }
+
+}
@@ -0,0 +1,504 @@
+/*
+ * Copyright 2021 Mountain Fog, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtnfog.philter.cache;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A cache of filtered text kept in files on disk, keyed on a {@link ContentDigest}, that
+ * survives restarts.
+ *
+ * Entries are GZIP compressed and appended to segment files. When the cache grows past its
+ * size the oldest segment is deleted. Only the index of entries is held on the heap; the
+ * entries themselves are read through the operating system's page cache. The index is
+ * written to disk when the cache is closed and read back by {@link #load()}. If the index
+ * was not written, such as after a crash, it is rebuilt by scanning the segments.
+ */
+public class DiskResultCache implements Closeable {
+
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".dat";
+    private static final String INDEX_FILE = "index.dat";
+    private static final int INDEX_VERSION = 1;
+
+    // Keep enough segments that deleting the oldest one only drops a small part of the cache.
+    private static final int SEGMENTS = 16;
+    private static final long MIN_SEGMENT_SIZE_BYTES = 1024 * 1024;
+
+    private final File directory;
+    private final long maxSizeBytes;
+    private final long segmentSizeBytes;
+    private final long maxEntrySizeBytes;
+    private final long ttlMs;
+
+    private final Map<String, Location> index = new HashMap<>();
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    private Segment activeSegment;
+    private long sizeBytes;
+
+    private volatile boolean loaded;
+    private boolean closed;
+
+    /**
+     * Creates a cache. The cache is empty until {@link #load()} is called.
+     * @param directory The directory holding the cache's files.
+     * @param maxSizeBytes The maximum size of the cache's files.
+     * @param maxEntrySizeBytes The maximum compressed size of a single entry. Larger results are not cached.
+     * @param ttlMs How long an entry is kept after it was added.
+     */
+    public DiskResultCache(File directory, long maxSizeBytes, long maxEntrySizeBytes, long ttlMs) {
+
+        this.directory = directory;
+        this.maxSizeBytes = maxSizeBytes;
+        this.segmentSizeBytes = Math.max(MIN_SEGMENT_SIZE_BYTES, maxSizeBytes / SEGMENTS);
+        this.maxEntrySizeBytes = Math.min(maxEntrySizeBytes, segmentSizeBytes);
+        this.ttlMs = ttlMs;
+
+    }
+
+    /**
+     * Opens the segments on disk and reads or rebuilds the index. Until this completes the
+     * cache behaves as if it were empty and does not accept new entries, so it can be called
+     * from a background thread without holding up processing.
+     * @throws IOException Thrown if the cache's files cannot be read.
+     */
+    public synchronized void load() throws IOException {
+
+        // The cache may have been closed before a background load got started.
+        if(loaded || closed) {
+            return;
+        }
+
+        Files.createDirectories(directory.toPath());
+
+        final File[] files = directory.listFiles((dir, name) -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX));
+
+        if(files != null) {
+
+            for(final File file : files) {
+
+                final long id = Long.parseLong(file.getName().substring(SEGMENT_PREFIX.length(), file.getName().length() - SEGMENT_SUFFIX.length()));
+                final Segment segment = new Segment(id, file);
+
+                // Segments that never had an entry written to them would otherwise never be evicted.
+                if(segment.size == 0) {
+                    segment.channel.close();
+                    Files.delete(file.toPath());
+                    continue;
+                }
+
+                segments.put(id, segment);
+                sizeBytes += segment.size;
+
+            }
+
+        }
+
+        final File indexFile = new File(directory, INDEX_FILE);
+        final boolean indexed = indexFile.exists() && readIndex(indexFile);
+
+        // The index would go stale as soon as new entries are added, so it is only kept while the cache is closed.
+        Files.deleteIfExists(indexFile.toPath());
+
+        long lastSegmentEnd = 0;
+
+        if(!indexed) {
+            for(final Segment segment : segments.values()) {
+                lastSegmentEnd = scanSegment(segment);
+            }
+        }
+
+        // Keep appending to the newest segment so each restart doesn't leave another segment behind.
+        // Otherwise the active segment is created when the first entry is put.
+        if(!segments.isEmpty()) {
+
+            final Segment lastSegment = segments.lastEntry().getValue();
+
+            // The segments are only known to end with a complete entry when the index was written on close.
+            // Cut off an entry that was only partly written before appending after it.
+            if(!indexed && lastSegmentEnd < lastSegment.size) {
+                lastSegment.channel.truncate(lastSegmentEnd);
+                sizeBytes -= lastSegment.size - lastSegmentEnd;
+                lastSegment.size = lastSegmentEnd;
+            }
+
+            if(lastSegment.size < segmentSizeBytes) {
+                activeSegment = lastSegment;
+            }
+
+        }
+
+        evict();
+
+        loaded = true;
+
+    }
+
+    /**
+     * Gets the filtered text cached under a key.
+     * @param key The key.
+     * @return The filtered text, or <code>null</code> if it is not cached, has expired, or the cache is not loaded.
+     * @throws IOException Thrown if the entry cannot be read.
+     */
+    public String get(String key) throws IOException {
+
+        if(!loaded) {
+            return null;
+        }
+
+        final Location location;
+        final Segment segment;
+
+        synchronized(this) {
+
+            location = index.get(key);
+
+            if(location == null) {
+                return null;
+            }
+
+            if(System.currentTimeMillis() >= location.expiresAtMs) {
+                index.remove(key);
+                return null;
+            }
+
+            segment = segments.get(location.segmentId);
+
+        }
+
+        final ByteBuffer value = ByteBuffer.allocate(location.length);
+
+        try {
+
+            while(value.hasRemaining()) {
+                if(segment.channel.read(value, location.offset + value.position()) == -1) {
+                    throw new EOFException("The disk cache segment " + segment.file + " was truncated.");
+                }
+            }
+
+        } catch (ClosedChannelException ex) {
+
+            // The segment was evicted while it was being read.
+            return null;
+
+        }
+
+        return IOUtils.toString(new GZIPInputStream(new ByteArrayInputStream(value.array())), StandardCharsets.UTF_8);
+
+    }
+
+    /**
+     * Caches filtered text under a key, deleting the oldest segment if the cache has grown too large.
+     * @param key The key.
+     * @param filteredText The filtered text.
+     * @throws IOException Thrown if the entry cannot be written.
+     */
+    public void put(String key, String filteredText) throws IOException {
+
+        if(!loaded) {
+            return;
+        }
+
+        final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+
+        try(final GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(filteredText.getBytes(StandardCharsets.UTF_8));
+        }
+
+        if(compressed.size() > maxEntrySizeBytes) {
+            return;
+        }
+
+        final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        final long expiresAtMs = System.currentTimeMillis() + ttlMs;
+
+        final ByteBuffer record = ByteBuffer.allocate(4 + keyBytes.length + 8 + 4 + compressed.size());
+        record.putInt(keyBytes.length);
+        record.put(keyBytes);
+        record.putLong(expiresAtMs);
+        record.putInt(compressed.size());
+        record.put(compressed.toByteArray());
+        record.flip();
+
+        synchronized(this) {
+
+            if(!loaded) {
+                return;
+            }
+
+            if(activeSegment == null || activeSegment.size + record.remaining() > segmentSizeBytes) {
+                activeSegment = newSegment();
+            }
+
+            final long recordOffset = activeSegment.size;
+            final int recordLength = record.remaining();
+
+            while(record.hasRemaining()) {
+                activeSegment.channel.write(record, recordOffset + record.position());
+            }
+
+            activeSegment.size += recordLength;
+            sizeBytes += recordLength;
+
+            index.put(key, new Location(activeSegment.id, recordOffset + recordLength - compressed.size(), compressed.size(), expiresAtMs));
+
+            evict();
+
+        }
+
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    public boolean isLoaded() {
+        return loaded;
+    }
+
+    /**
+     * Writes the index to disk so the cache can be loaded again and closes the segments.
+     * @throws IOException Thrown if the index cannot be written.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+
+        closed = true;
+
+        if(!loaded) {
+            return;
+        }
+
+        loaded = false;
+
+        try {
+
+            for(final Segment segment : segments.values()) {
+                segment.channel.force(false);
+            }
+
+            writeIndex();
+
+        } finally {
+
+            for(final Segment segment : segments.values()) {
+                segment.channel.close();
+            }
+
+            segments.clear();
+            index.clear();
+            activeSegment = null;
+            sizeBytes = 0;
+
+        }
+
+    }
+
+    private Segment newSegment() throws IOException {
+
+        final long id = segments.isEmpty() ? 0 : segments.lastKey() + 1;
+        final Segment segment = new Segment(id, new File(directory, SEGMENT_PREFIX + id + SEGMENT_SUFFIX));
+
+        segments.put(id, segment);
+
+        return segment;
+
+    }
+
+    private void evict() throws IOException {
+
+        while(sizeBytes > maxSizeBytes && segments.size() > 1) {
+
+            final Segment eldest = segments.pollFirstEntry().getValue();
+            final Iterator<Location> locations = index.values().iterator();
+
+            while(locations.hasNext()) {
+                if(locations.next().segmentId == eldest.id) {
+                    locations.remove();
+                }
+            }
+
+            sizeBytes -= eldest.size;
+
+            eldest.channel.close();
+            Files.deleteIfExists(eldest.file.toPath());
+
+        }
+
+    }
+
+    private long scanSegment(Segment segment) throws IOException {
+
+        long offset = 0;
+
+        try(final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(segment.file)))) {
+
+            while(true) {
+
+                try {
+
+                    final int keyLength = in.readInt();
+
+                    // A key length that doesn't fit is the start of an entry that was only partly written.
+                    if(keyLength < 0 || offset + 4 + keyLength > segment.size) {
+                        break;
+                    }
+
+                    final byte[] keyBytes = new byte[keyLength];
+                    in.readFully(keyBytes);
+
+                    final long expiresAtMs = in.readLong();
+                    final int length = in.readInt();
+
+                    if(length < 0 || offset + 4 + keyBytes.length + 8 + 4 + length > segment.size) {
+                        break;
+                    }
+
+                    IOUtils.skipFully(in, length);
+
+                    final long valueOffset = offset + 4 + keyBytes.length + 8 + 4;
+
+                    // Later entries replace earlier entries with the same key.
+                    index.put(new String(keyBytes, StandardCharsets.UTF_8), new Location(segment.id, valueOffset, length, expiresAtMs));
+
+                    offset = valueOffset + length;
+
+                } catch (EOFException ex) {
+                    break;
+                }
+
+            }
+
+        }
+
+        return offset;
+
+    }
+
+    private boolean readIndex(File indexFile) throws IOException {
+
+        final long now = System.currentTimeMillis();
+
+        try(final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+
+            // Fall back to scanning when the index was written by a different version.
+            if(in.readInt() != INDEX_VERSION) {
+                return false;
+            }
+
+            final int entries = in.readInt();
+
+            for(int i = 0; i < entries; i++) {
+
+                final String key = in.readUTF();
+                final Location location = new Location(in.readLong(), in.readLong(), in.readInt(), in.readLong());
+                final Segment segment = segments.get(location.segmentId);
+
+                if(segment != null && location.offset + location.length <= segment.size && location.expiresAtMs > now) {
+                    index.put(key, location);
+                }
+
+            }
+
+        }
+
+        return true;
+
+    }
+
+    private void writeIndex() throws IOException {
+
+        final File temporaryFile = new File(directory, INDEX_FILE + ".tmp");
+
+        try(final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile)))) {
+
+            out.writeInt(INDEX_VERSION);
+            out.writeInt(index.size());
+
+            for(final Map.Entry<String, Location> entry : index.entrySet()) {
+                out.writeUTF(entry.getKey());
+                out.writeLong(entry.getValue().segmentId);
+                out.writeLong(entry.getValue().offset);
+                out.writeInt(entry.getValue().length);
+                out.writeLong(entry.getValue().expiresAtMs);
+            }
+
+        }
+
+        // Replace the index in one step so a crash never leaves a partly written index behind.
+        Files.move(temporaryFile.toPath(), new File(directory, INDEX_FILE).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+    }
+
+    private static class Segment {
+
+        private final long id;
+        private final File file;
+        private final FileChannel channel;
+        private long size;
+
+        private Segment(long id, File file) throws IOException {
+            this.id = id;
+            this.file = file;
+            this.channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.size = channel.size();
+        }
+
+    }
+
+    private static class Location {
+
+        private final long segmentId;
+        private final long offset;
+        private final int length;
+        private final long expiresAtMs;
+
+        private Location(long segmentId, long offset, int length, long expiresAtMs) {
+            this.segmentId = segmentId;
+            this.offset = offset;
+            this.length = length;
+            this.expiresAtMs = expiresAtMs;
+        }
+
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2021 Mountain Fog, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtnfog.philter.cache;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.nifi.distributed.cache.client.Deserializer;
+import org.apache.nifi.distributed.cache.client.DistributedMapCacheClient;
+import org.apache.nifi.distributed.cache.client.Serializer;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A cache of filtered text shared by every node in a NiFi cluster through a
+ * {@link DistributedMapCacheClient}, keyed on a {@link ContentDigest}.
+ *
+ * The filtered text is GZIP compressed to keep the cache server small. The map cache
+ * has no expiration of its own so each value starts with the time it expires. Expired
+ * values are ignored when they are read and replaced by the next put, or evicted by the
+ * cache server.
+ */
+public class DistributedResultCache {
+
+    private static final String KEY_PREFIX = "philter-result:";
+
+    private static final Serializer<String> KEY_SERIALIZER = (key, out) -> out.write(key.getBytes(StandardCharsets.UTF_8));
+    private static final Serializer<byte[]> VALUE_SERIALIZER = (value, out) -> out.write(value);
+    private static final Deserializer<byte[]> VALUE_DESERIALIZER = input -> input == null || input.length == 0 ? null : input;
+
+    private final DistributedMapCacheClient client;
+    private final long maxEntrySizeBytes;
+    private final long ttlMs;
+
+    /**
+     * Creates a cache.
+     * @param client The {@link DistributedMapCacheClient}.
+     * @param maxEntrySizeBytes The maximum compressed size of a single entry. Larger results are not cached.
+     * @param ttlMs How long an entry is kept after it was added.
+     */
+    public DistributedResultCache(DistributedMapCacheClient client, long maxEntrySizeBytes, long ttlMs) {
+
+        this.client = client;
+        this.maxEntrySizeBytes = maxEntrySizeBytes;
+        this.ttlMs = ttlMs;
+
+    }
+
+    /**
+     * Gets the filtered text cached under a key.
+     * @param key The key.
+     * @return The filtered text, or <code>null</code> if it is not cached or has expired.
+     * @throws IOException Thrown if the cache cannot be reached.
+     */
+    public String get(String key) throws IOException {
+
+        final byte[] value = client.get(KEY_PREFIX + key, KEY_SERIALIZER, VALUE_DESERIALIZER);
+
+        if(value == null) {
+            return null;
+        }
+
+        try(final DataInputStream in = new DataInputStream(new ByteArrayInputStream(value))) {
+
+            final long expiresAtMs = in.readLong();
+
+            // Not removed because another node may have put a fresh value under the key since it was read.
+            if(System.currentTimeMillis() >= expiresAtMs) {
+                return null;
+            }
+
+            return IOUtils.toString(new GZIPInputStream(in), StandardCharsets.UTF_8);
+
+        }
+
+    }
+
+    /**
+     * Caches filtered text under a key.
+     * @param key The key.
+     * @param filteredText The filtered text.
+     * @throws IOException Thrown if the cache cannot be reached.
+     */
+    public void put(String key, String filteredText) throws IOException {
+
+        final ByteArrayOutputStream value = new ByteArrayOutputStream();
+
+        try(final DataOutputStream out = new DataOutputStream(value)) {
+
+            out.writeLong(System.currentTimeMillis() + ttlMs);
+
+            try(final GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+                gzip.write(filteredText.getBytes(StandardCharsets.UTF_8));
+            }
+
+        }
+
+        if(value.size() <= maxEntrySizeBytes) {
+            client.put(KEY_PREFIX + key, value.toByteArray(), KEY_SERIALIZER, VALUE_SERIALIZER);
+        }
+
+    }
+
+}
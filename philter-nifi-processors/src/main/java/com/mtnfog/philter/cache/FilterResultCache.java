@@ -0,0 +1,143 @@
+/*
+ * Copyright 2021 Mountain Fog, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtnfog.philter.cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An in-memory cache of filtered text keyed on a {@link ContentDigest}.
+ *
+ * The cache is bounded by the approximate number of bytes its entries take on the heap
+ * and evicts the least recently used entries first. Entries also expire a period of
+ * time after they were added.
+ */
+public class FilterResultCache {
+
+    // The approximate overhead of an entry beyond its key and filtered text.
+    private static final long ENTRY_OVERHEAD_BYTES = 96;
+
+    private final long maxSizeBytes;
+    private final long maxEntrySizeBytes;
+    private final long ttlNanos;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long sizeBytes;
+
+    /**
+     * Creates a cache.
+     * @param maxSizeBytes The maximum approximate size of all entries on the heap.
+     * @param maxEntrySizeBytes The maximum approximate size of a single entry. Larger results are not cached.
+     * @param ttlMs How long an entry is kept after it was added.
+     */
+    public FilterResultCache(long maxSizeBytes, long maxEntrySizeBytes, long ttlMs) {
+
+        this.maxSizeBytes = maxSizeBytes;
+        this.maxEntrySizeBytes = Math.min(maxSizeBytes, maxEntrySizeBytes);
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+
+    }
+
+    /**
+     * Gets the filtered text cached under a key.
+     * @param key The key.
+     * @return The filtered text, or <code>null</code> if it is not cached or has expired.
+     */
+    public synchronized String get(String key) {
+
+        final Entry entry = entries.get(key);
+
+        if(entry == null) {
+            return null;
+        }
+
+        if(System.nanoTime() - entry.createdNanos > ttlNanos) {
+            remove(key);
+            return null;
+        }
+
+        return entry.filteredText;
+
+    }
+
+    /**
+     * Caches filtered text under a key, evicting the least recently used entries to make room.
+     * @param key The key.
+     * @param filteredText The filtered text.
+     */
+    public synchronized void put(String key, String filteredText) {
+
+        final long entrySizeBytes = sizeOf(key, filteredText);
+
+        if(entrySizeBytes > maxEntrySizeBytes) {
+            return;
+        }
+
+        remove(key);
+
+        entries.put(key, new Entry(filteredText, System.nanoTime()));
+        sizeBytes += entrySizeBytes;
+
+        final Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+
+        while(sizeBytes > maxSizeBytes && iterator.hasNext()) {
+            final Map.Entry<String, Entry> eldest = iterator.next();
+            sizeBytes -= sizeOf(eldest.getKey(), eldest.getValue().filteredText);
+            iterator.remove();
+        }
+
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    private void remove(String key) {
+
+        final Entry entry = entries.remove(key);
+
+        if(entry != null) {
+            sizeBytes -= sizeOf(key, entry.filteredText);
+        }
+
+    }
+
+    private static long sizeOf(String key, String filteredText) {
+
+        // Strings take two bytes per character on the heap in the worst case.
+        return ENTRY_OVERHEAD_BYTES + 2L * (key.length() + filteredText.length());
+
+    }
+
+    private static class Entry {
+
+        private final String filteredText;
+        private final long createdNanos;
+
+        private Entry(String filteredText, long createdNanos) {
+            this.filteredText = filteredText;
+            this.createdNanos = createdNanos;
+        }
+
+    }
+
+}
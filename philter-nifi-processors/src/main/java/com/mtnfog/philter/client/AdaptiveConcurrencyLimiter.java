@@ -0,0 +1,127 @@
+/*
+ * Copyright 2021 Mountain Fog, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtnfog.philter.client;
+
+/**
+ * Limits the number of requests to Philter in flight using a TCP Vegas style
+ * algorithm driven by the observed round-trip time.
+ *
+ * The lowest latency seen is taken as the latency of an unloaded Philter. Comparing it
+ * to each sample estimates how many of the requests in flight are waiting in a queue
+ * inside Philter rather than being worked on. The limit grows while that queue is short,
+ * shrinks when it grows long, and backs off multiplicatively when a request fails, so it
+ * settles near the number of requests Philter can work on at once.
+ */
+public class AdaptiveConcurrencyLimiter implements RequestListener {
+
+    // Grow the limit while fewer than this many requests are estimated to be queued.
+    private static final int ALPHA = 3;
+
+    // Shrink the limit when more than this many requests are estimated to be queued.
+    private static final int BETA = 6;
+
+    // How much the limit shrinks when a request fails.
+    private static final double BACKOFF_RATIO = 0.9;
+
+    // How often the unloaded latency is re-measured so it follows changes in Philter and in the documents.
+    private static final int PROBE_SAMPLES = 1000;
+
+    private final int minLimit;
+    private final int maxLimit;
+
+    private int limit;
+    private int inFlight;
+    private long noLoadRttNanos;
+    private long samples;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit) {
+
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+
+    }
+
+    /**
+     * Takes a permit for a request if the limit allows it. A permit that is
+     * taken must be given back with {@link #release()}.
+     * @return <code>true</code> if a permit was taken.
+     */
+    public synchronized boolean tryAcquire() {
+
+        if(inFlight < limit) {
+            inFlight++;
+            return true;
+        }
+
+        return false;
+
+    }
+
+    public synchronized void release() {
+        inFlight--;
+    }
+
+    /**
+     * Records the outcome of a request to Philter and adjusts the limit.
+     * @param startNanos When the request was sent.
+     * @param rttNanos The round-trip time of the request.
+     * @param success Whether or not the request succeeded.
+     */
+    @Override
+    public synchronized void onRequestCompleted(long startNanos, long rttNanos, boolean success) {
+
+        if(!success) {
+            limit = Math.max(minLimit, (int) (limit * BACKOFF_RATIO));
+            return;
+        }
+
+        // The unloaded latency can't be seen while Philter is kept busy, so a probe halves the limit to
+        // drain the queue inside Philter and takes the lowest latency seen while it drains.
+        if(++samples % PROBE_SAMPLES == 0) {
+            limit = Math.max(minLimit, limit / 2);
+            noLoadRttNanos = 0;
+        }
+
+        if(noLoadRttNanos == 0 || rttNanos < noLoadRttNanos) {
+            noLoadRttNanos = rttNanos;
+            return;
+        }
+
+        // Only adjust while the limit is being used, otherwise it would grow without bound during light load.
+        if(inFlight * 2 < limit) {
+            return;
+        }
+
+        final double queued = limit * (1 - (double) noLoadRttNanos / rttNanos);
+
+        if(queued < ALPHA) {
+            limit = Math.min(maxLimit, limit + 1);
+        } else if(queued > BETA) {
+            limit = Math.max(minLimit, limit - 1);
+        }
+
+    }
+
+    public synchronized int getLimit() {
+        return limit;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+}
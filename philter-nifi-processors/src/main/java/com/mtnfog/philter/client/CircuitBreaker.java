@@ -0,0 +1,177 @@
+/*
+ * Copyright 2021 Mountain Fog, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtnfog.philter.client;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stops requests from being sent to Philter while too many of the recent requests have failed.
+ *
+ * The breaker opens when the failure rate over a window of the most recent requests reaches
+ * a threshold. Once it has been open for a period of time it lets a single probe request
+ * through. The breaker closes if the probe succeeds and opens again if it fails. Requests
+ * that were sent before the probe, and are still completing, don't decide either way.
+ */
+public class CircuitBreaker implements RequestListener {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    public enum Permission {
+
+        /**
+         * Requests may be sent.
+         */
+        PERMITTED,
+
+        /**
+         * A single probe request may be sent to see if Philter has recovered.
+         */
+        PROBE,
+
+        /**
+         * No requests may be sent.
+         */
+        DENIED
+
+    }
+
+    private final boolean[] failures;
+    private final int failureRateThreshold;
+    private final long openNanos;
+
+    private State state = State.CLOSED;
+    private int requests;
+    private int failureCount;
+    private int next;
+    private long openedNanos;
+    private boolean probing;
+    private long probeGrantedNanos;
+
+    /**
+     * Creates a circuit breaker.
+     * @param windowSize The number of most recent requests the failure rate is calculated over.
+     * @param failureRateThreshold The percentage of failed requests in the window that opens the breaker.
+     * @param openMs How long the breaker stays open before a probe request is let through.
+     */
+    public CircuitBreaker(int windowSize, int failureRateThreshold, long openMs) {
+
+        this.failures = new boolean[windowSize];
+        this.failureRateThreshold = failureRateThreshold;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMs);
+
+    }
+
+    /**
+     * Asks whether requests may be sent to Philter. When {@link Permission#PROBE} is returned the
+     * caller must send exactly one request, or call {@link #cancelProbe()} if it has nothing to send.
+     * Nothing else may be sent while the breaker is not {@link State#CLOSED} so that the first
+     * request sent after the probe is granted is the probe.
+     * @return The {@link Permission}.
+     */
+    public synchronized Permission tryAcquire() {
+
+        if(state == State.CLOSED) {
+            return Permission.PERMITTED;
+        }
+
+        final long now = System.nanoTime();
+
+        if(state == State.OPEN && now - openedNanos >= openNanos) {
+            state = State.HALF_OPEN;
+        }
+
+        // A probe that never completes, such as when the probe's flowfile didn't need a request
+        // after all, is replaced by another once the open duration has elapsed again.
+        if(state == State.HALF_OPEN && (!probing || now - probeGrantedNanos >= openNanos)) {
+            probing = true;
+            probeGrantedNanos = now;
+            return Permission.PROBE;
+        }
+
+        return Permission.DENIED;
+
+    }
+
+    /**
+     * Gives back a probe that was not used so that the next caller can send it.
+     */
+    public synchronized void cancelProbe() {
+        probing = false;
+    }
+
+    @Override
+    public synchronized void onRequestCompleted(long startNanos, long latencyNanos, boolean success) {
+
+        if(state == State.HALF_OPEN) {
+
+            // Only the probe decides. Requests sent before it was granted, such as ones that were in
+            // flight when the breaker opened or a probe that was replaced, say nothing about recovery.
+            if(!probing || startNanos - probeGrantedNanos < 0) {
+                return;
+            }
+
+            // Start over with a clean window once Philter has recovered.
+            if(success) {
+                state = State.CLOSED;
+                requests = 0;
+                failureCount = 0;
+                next = 0;
+            } else {
+                open();
+            }
+
+            probing = false;
+
+        } else if(state == State.CLOSED) {
+
+            // Replace the oldest outcome in the window with this one.
+            if(requests == failures.length) {
+                if(failures[next]) {
+                    failureCount--;
+                }
+            } else {
+                requests++;
+            }
+
+            failures[next] = !success;
+            next = (next + 1) % failures.length;
+
+            if(!success) {
+                failureCount++;
+            }
+
+            if(requests == failures.length && failureCount * 100 >= failureRateThreshold * requests) {
+                open();
+            }
+
+        }
+
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedNanos = System.nanoTime();
+    }
+
+}
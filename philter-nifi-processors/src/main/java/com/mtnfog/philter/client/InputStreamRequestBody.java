@@ -0,0 +1,67 @@
+/*
+ * Copyright 2021 Mountain Fog, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtnfog.philter.client;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.Okio;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * A request body that is written directly from an input stream, such as
+ * a flowfile's content, without first reading the stream into memory.
+ *
+ * The stream can only be consumed once so the body is one-shot and is not
+ * closed by this class. The owner of the stream is responsible for closing it.
+ */
+public class InputStreamRequestBody extends RequestBody {
+
+    private final MediaType contentType;
+    private final InputStream inputStream;
+    private final long contentLength;
+
+    public InputStreamRequestBody(MediaType contentType, InputStream inputStream, long contentLength) {
+
+        this.contentType = contentType;
+        this.inputStream = inputStream;
+        this.contentLength = contentLength;
+
+    }
+
+    @Override
+    public MediaType contentType() {
+        return contentType;
+    }
+
+    @Override
+    public long contentLength() {
+        return contentLength;
+    }
+
+    @Override
+    public boolean isOneShot() {
+        return true;
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+        sink.writeAll(Okio.source(inputStream));
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2021 Mountain Fog, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtnfog.philter.client;
+
+import okhttp3.HttpUrl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A single Philter replica and the statistics used to balance requests across replicas.
+ */
+public class PhilterEndpoint {
+
+    // Weight of the newest sample in the latency moving average.
+    private static final double EWMA_ALPHA = 0.3;
+
+    private final HttpUrl url;
+    private final AtomicInteger outstandingRequests = new AtomicInteger();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+    private volatile double ewmaLatencyNanos;
+
+    // System.nanoTime() may be negative so an endpoint that was never ejected can't be told apart by the time alone.
+    private volatile boolean ejected;
+    private volatile long ejectedUntilNanos;
+
+    public PhilterEndpoint(String url) {
+        this.url = HttpUrl.get(url);
+    }
+
+    public HttpUrl getUrl() {
+        return url;
+    }
+
+    public int getOutstandingRequests() {
+        return outstandingRequests.get();
+    }
+
+    public double getEwmaLatencyNanos() {
+        return ewmaLatencyNanos;
+    }
+
+    /**
+     * Gets the expected cost of sending one more request to this endpoint, which is
+     * its average latency scaled by the number of requests already waiting on it.
+     * @return The expected cost of sending one more request to this endpoint.
+     */
+    public double getCost() {
+        return Math.max(ewmaLatencyNanos, 1) * (outstandingRequests.get() + 1);
+    }
+
+    public boolean isEjected(long nowNanos) {
+        return ejected && nowNanos - ejectedUntilNanos < 0;
+    }
+
+    void onRequestStarted() {
+        outstandingRequests.incrementAndGet();
+    }
+
+    void onRequestCompleted(long latencyNanos, boolean success, int failureThreshold, long ejectionNanos) {
+
+        outstandingRequests.decrementAndGet();
+
+        synchronized (this) {
+            ewmaLatencyNanos = ewmaLatencyNanos == 0 ? latencyNanos : EWMA_ALPHA * latencyNanos + (1 - EWMA_ALPHA) * ewmaLatencyNanos;
+        }
+
+        if(success) {
+
+            consecutiveFailures.set(0);
+
+        } else if(consecutiveFailures.incrementAndGet() >= failureThreshold) {
+
+            // Passively eject the endpoint. It is tried again once the ejection expires.
+            consecutiveFailures.set(0);
+            ejectedUntilNanos = System.nanoTime() + ejectionNanos;
+            ejected = true;
+
+        }
+
+    }
+
+    @Override
+    public String toString() {
+        return url.toString();
+    }
+
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2021 Mountain Fog, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtnfog.philter.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Selects a Philter replica for each request and passively ejects
+ * replicas that fail repeatedly.
+ */
+public class PhilterEndpoints {
+
+    public static final int DEFAULT_FAILURE_THRESHOLD = 5;
+    public static final long DEFAULT_EJECTION_MS = 30_000;
+
+    public enum Strategy {
+
+        /**
+         * Send each request to the replica with the fewest requests in flight.
+         */
+        LEAST_OUTSTANDING_REQUESTS,
+
+        /**
+         * Pick two replicas at random and send the request to the one with the lower
+         * latency moving average weighted by its requests in flight.
+         */
+        POWER_OF_TWO_CHOICES
+
+    }
+
+    private final List<PhilterEndpoint> endpoints;
+    private final Strategy strategy;
+    private final int failureThreshold;
+    private final long ejectionNanos;
+
+    public PhilterEndpoints(List<String> urls, Strategy strategy) {
+        this(urls, strategy, DEFAULT_FAILURE_THRESHOLD, DEFAULT_EJECTION_MS);
+    }
+
+    public PhilterEndpoints(List<String> urls, Strategy strategy, int failureThreshold, long ejectionMs) {
+
+        if(urls.isEmpty()) {
+            throw new IllegalArgumentException("At least one Philter endpoint is required.");
+        }
+
+        this.endpoints = new ArrayList<>(urls.size());
+
+        for(final String url : urls) {
+            endpoints.add(new PhilterEndpoint(url));
+        }
+
+        this.strategy = strategy;
+        this.failureThreshold = failureThreshold;
+        this.ejectionNanos = TimeUnit.MILLISECONDS.toNanos(ejectionMs);
+
+    }
+
+    /**
+     * Splits a comma-separated list of Philter API endpoints.
+     * @param value The comma-separated list of endpoints.
+     * @return The endpoints.
+     */
+    public static List<String> parse(String value) {
+
+        final List<String> endpoints = new ArrayList<>();
+
+        for(final String endpoint : value.split(",")) {
+            if(!endpoint.trim().isEmpty()) {
+                endpoints.add(endpoint.trim());
+            }
+        }
+
+        return Collections.unmodifiableList(endpoints);
+
+    }
+
+    /**
+     * Selects the endpoint for the next request and counts the request as started.
+     * The caller must call {@link #complete(PhilterEndpoint, long, boolean)} when the request finishes.
+     * @return The selected {@link PhilterEndpoint}.
+     */
+    public PhilterEndpoint start() {
+
+        final PhilterEndpoint endpoint = select();
+
+        endpoint.onRequestStarted();
+
+        return endpoint;
+
+    }
+
+    /**
+     * Records the outcome of a request started with {@link #start()}.
+     * @param endpoint The {@link PhilterEndpoint} the request was sent to.
+     * @param latencyNanos The latency of the request.
+     * @param success Whether or not the replica handled the request. Client errors count as handled.
+     */
+    public void complete(PhilterEndpoint endpoint, long latencyNanos, boolean success) {
+        endpoint.onRequestCompleted(latencyNanos, success, failureThreshold, ejectionNanos);
+    }
+
+    public List<PhilterEndpoint> getEndpoints() {
+        return endpoints;
+    }
+
+    private PhilterEndpoint select() {
+
+        if(endpoints.size() == 1) {
+            return endpoints.get(0);
+        }
+
+        final long now = System.nanoTime();
+
+        final List<PhilterEndpoint> candidates = new ArrayList<>(endpoints.size());
+
+        for(final PhilterEndpoint endpoint : endpoints) {
+            if(!endpoint.isEjected(now)) {
+                candidates.add(endpoint);
+            }
+        }
+
+        // If every replica is ejected it is better to try one than to fail without trying.
+        if(candidates.isEmpty()) {
+            candidates.addAll(endpoints);
+        }
+
+        if(candidates.size() == 1) {
+            return candidates.get(0);
+        }
+
+        if(strategy == Strategy.POWER_OF_TWO_CHOICES) {
+
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+
+            final int first = random.nextInt(candidates.size());
+            final int second = (first + 1 + random.nextInt(candidates.size() - 1)) % candidates.size();
+
+            final PhilterEndpoint a = candidates.get(first);
+            final PhilterEndpoint b = candidates.get(second);
+
+            return a.getCost() <= b.getCost() ? a : b;
+
+        } else {
+
+            // Start at a random replica so ties don't all land on the first one.
+            final int offset = ThreadLocalRandom.current().nextInt(candidates.size());
+
+            PhilterEndpoint selected = null;
+
+            for(int i = 0; i < candidates.size(); i++) {
+
+                final PhilterEndpoint candidate = candidates.get((offset + i) % candidates.size());
+
+                if(selected == null || candidate.getOutstandingRequests() < selected.getOutstandingRequests()) {
+                    selected = candidate;
+                }
+
+            }
+
+            return selected;
+
+        }
+
+    }
+
+}
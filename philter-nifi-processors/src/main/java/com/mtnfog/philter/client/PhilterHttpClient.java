@@ -0,0 +1,377 @@
+/*
+ * Copyright 2021 Mountain Fog, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtnfog.philter.client;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.mtnfog.philter.model.ExplainResponse;
+import com.mtnfog.philter.model.Explanation;
+import com.mtnfog.philter.model.FilterResponse;
+import com.mtnfog.philter.model.Span;
+import com.mtnfog.philter.model.exceptions.ClientException;
+import com.mtnfog.philter.model.exceptions.ServiceUnavailableException;
+import com.mtnfog.philter.model.exceptions.UnauthorizedException;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.Okio;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A client for Philter's filter and explain APIs that talks to Philter directly through OkHttp.
+ *
+ * The {@link com.mtnfog.philter.PhilterClient} only offers blocking calls to a single
+ * endpoint on top of Retrofit. This client exposes the same APIs through OkHttp's
+ * enqueue/callback path so a single thread can keep many requests to Philter in flight,
+ * and spreads requests across one or more Philter replicas.
+ */
+public class PhilterHttpClient {
+
+    public static final MediaType TEXT_PLAIN = MediaType.get("text/plain; charset=utf-8");
+    public static final String HEADER_DOCUMENT_ID = "x-document-id";
+
+    private static final String FILTER_PATH = "api/filter";
+    private static final String EXPLAIN_PATH = "api/explain";
+
+    private final OkHttpClient okHttpClient;
+    private final PhilterEndpoints endpoints;
+    private final List<RequestListener> requestListeners = new CopyOnWriteArrayList<>();
+    private final Gson gson = new Gson();
+
+    public PhilterHttpClient(OkHttpClient okHttpClient, PhilterEndpoints endpoints) {
+
+        this.okHttpClient = okHttpClient;
+        this.endpoints = endpoints;
+
+    }
+
+    /**
+     * Adds a listener that is told the outcome of every request to Philter.
+     * @param requestListener The {@link RequestListener}.
+     */
+    public void addRequestListener(RequestListener requestListener) {
+        requestListeners.add(requestListener);
+    }
+
+    /**
+     * Sends text to Philter for filtering and waits for the response.
+     * @param context The document context.
+     * @param documentId The document ID, or <code>null</code> to let Philter assign one.
+     * @param filterProfileName The name of the filter profile.
+     * @param text The text to filter.
+     * @return The {@link FilterResponse}.
+     * @throws IOException Thrown if the request to Philter fails.
+     */
+    public FilterResponse filter(String context, String documentId, String filterProfileName, String text) throws IOException {
+        return filter(context, documentId, filterProfileName, RequestBody.create(text, TEXT_PLAIN));
+    }
+
+    /**
+     * Sends a request body to Philter for filtering and waits for the response.
+     * @param context The document context.
+     * @param documentId The document ID, or <code>null</code> to let Philter assign one.
+     * @param filterProfileName The name of the filter profile.
+     * @param body The text to filter. This may be streamed, such as from an {@link InputStreamRequestBody}.
+     * @return The {@link FilterResponse}.
+     * @throws IOException Thrown if the request to Philter fails.
+     */
+    public FilterResponse filter(String context, String documentId, String filterProfileName, RequestBody body) throws IOException {
+
+        try(final Response response = execute(FILTER_PATH, "text/plain", context, documentId, filterProfileName, body)) {
+            return toFilterResponse(context, response);
+        }
+
+    }
+
+    /**
+     * Sends a request body to Philter for filtering and copies the filtered text
+     * from the response directly to an output stream as it is received.
+     * @param context The document context.
+     * @param documentId The document ID, or <code>null</code> to let Philter assign one.
+     * @param filterProfileName The name of the filter profile.
+     * @param body The text to filter.
+     * @param out The stream to receive the filtered text. The stream is not closed.
+     * @return The document ID assigned by Philter.
+     * @throws IOException Thrown if the request to Philter fails.
+     */
+    public String filter(String context, String documentId, String filterProfileName, RequestBody body, OutputStream out) throws IOException {
+
+        try(final Response response = execute(FILTER_PATH, "text/plain", context, documentId, filterProfileName, body)) {
+
+            checkResponse(response);
+
+            // Copies one segment at a time so the filtered text is never fully held in memory.
+            response.body().source().readAll(Okio.sink(out));
+
+            return response.header(HEADER_DOCUMENT_ID);
+
+        }
+
+    }
+
+    /**
+     * Sends text to Philter for filtering without blocking the calling thread.
+     * @param context The document context.
+     * @param documentId The document ID, or <code>null</code> to let Philter assign one.
+     * @param filterProfileName The name of the filter profile.
+     * @param text The text to filter.
+     * @return A future that is completed with the {@link FilterResponse} when Philter responds.
+     */
+    public CompletableFuture<FilterResponse> filterAsync(String context, String documentId, String filterProfileName, String text) {
+
+        final CompletableFuture<FilterResponse> future = new CompletableFuture<>();
+
+        final PhilterEndpoint endpoint = endpoints.start();
+        final long start = System.nanoTime();
+
+        final Request request = newRequest(endpoint, FILTER_PATH, "text/plain", context, documentId, filterProfileName,
+                RequestBody.create(text, TEXT_PLAIN));
+
+        okHttpClient.newCall(request).enqueue(new Callback() {
+
+            @Override
+            public void onFailure(Call call, IOException ex) {
+                complete(endpoint, start, false);
+                future.completeExceptionally(ex);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+
+                complete(endpoint, start, isHandled(response));
+
+                try {
+                    future.complete(toFilterResponse(context, response));
+                } catch (Exception ex) {
+                    future.completeExceptionally(ex);
+                } finally {
+                    response.close();
+                }
+
+            }
+
+        });
+
+        return future;
+
+    }
+
+    /**
+     * Sends text to Philter's explain API and waits for the response.
+     * @param context The document context.
+     * @param documentId The document ID, or <code>null</code> to let Philter assign one.
+     * @param filterProfileName The name of the filter profile.
+     * @param text The text to filter.
+     * @return The {@link ExplainResponse} which includes the spans that were applied.
+     * @throws IOException Thrown if the request to Philter fails.
+     */
+    public ExplainResponse explain(String context, String documentId, String filterProfileName, String text) throws IOException {
+
+        try(final Response response = execute(EXPLAIN_PATH, "application/json", context, documentId, filterProfileName,
+                RequestBody.create(text, TEXT_PLAIN))) {
+
+            checkResponse(response);
+
+            return gson.fromJson(response.body().charStream(), ExplainResponse.class);
+
+        }
+
+    }
+
+    /**
+     * Sends a request body to Philter's explain API and reads only the spans that were applied.
+     * The filtered text in the response is skipped as it is read rather than held in memory.
+     * @param context The document context.
+     * @param documentId The document ID, or <code>null</code> to let Philter assign one.
+     * @param filterProfileName The name of the filter profile.
+     * @param body The text to filter.
+     * @return The {@link ExplainResponse} without the filtered text or the ignored spans.
+     * @throws IOException Thrown if the request to Philter fails.
+     */
+    public ExplainResponse explainSpans(String context, String documentId, String filterProfileName, RequestBody body) throws IOException {
+
+        try(final Response response = execute(EXPLAIN_PATH, "application/json", context, documentId, filterProfileName, body)) {
+
+            checkResponse(response);
+
+            final ExplainResponse explainResponse = new ExplainResponse();
+            final Explanation explanation = new Explanation();
+            final List<Span> appliedSpans = new ArrayList<>();
+
+            explainResponse.setContext(context);
+            explainResponse.setExplanation(explanation);
+            explanation.setAppliedSpans(appliedSpans);
+
+            try(final JsonReader reader = new JsonReader(response.body().charStream())) {
+
+                reader.beginObject();
+
+                while(reader.hasNext()) {
+
+                    final String name = reader.nextName();
+
+                    if("documentId".equals(name) && reader.peek() != JsonToken.NULL) {
+                        explainResponse.setDocumentId(reader.nextString());
+                    } else if("explanation".equals(name) && reader.peek() != JsonToken.NULL) {
+                        readAppliedSpans(reader, appliedSpans);
+                    } else {
+                        reader.skipValue();
+                    }
+
+                }
+
+                reader.endObject();
+
+            }
+
+            return explainResponse;
+
+        }
+
+    }
+
+    private void readAppliedSpans(JsonReader reader, List<Span> appliedSpans) throws IOException {
+
+        reader.beginObject();
+
+        while(reader.hasNext()) {
+
+            if("appliedSpans".equals(reader.nextName()) && reader.peek() != JsonToken.NULL) {
+
+                reader.beginArray();
+
+                while(reader.hasNext()) {
+                    appliedSpans.add(gson.fromJson(reader, Span.class));
+                }
+
+                reader.endArray();
+
+            } else {
+                reader.skipValue();
+            }
+
+        }
+
+        reader.endObject();
+
+    }
+
+    private Response execute(String path, String accept, String context, String documentId, String filterProfileName,
+                             RequestBody body) throws IOException {
+
+        final PhilterEndpoint endpoint = endpoints.start();
+        final long start = System.nanoTime();
+
+        try {
+
+            final Response response = okHttpClient.newCall(newRequest(endpoint, path, accept, context, documentId, filterProfileName, body)).execute();
+
+            complete(endpoint, start, isHandled(response));
+
+            return response;
+
+        } catch (IOException ex) {
+
+            complete(endpoint, start, false);
+
+            throw ex;
+
+        }
+
+    }
+
+    private void complete(PhilterEndpoint endpoint, long start, boolean success) {
+
+        final long latencyNanos = System.nanoTime() - start;
+
+        endpoints.complete(endpoint, latencyNanos, success);
+
+        for(final RequestListener requestListener : requestListeners) {
+            requestListener.onRequestCompleted(start, latencyNanos, success);
+        }
+
+    }
+
+    private Request newRequest(PhilterEndpoint endpoint, String path, String accept, String context, String documentId,
+                               String filterProfileName, RequestBody body) {
+
+        final HttpUrl.Builder url = endpoint.getUrl().resolve(path).newBuilder();
+
+        // Mirror Retrofit's handling of the SDK's query parameters by omitting null values.
+        if(context != null) {
+            url.addQueryParameter("c", context);
+        }
+
+        if(documentId != null) {
+            url.addQueryParameter("d", documentId);
+        }
+
+        if(filterProfileName != null) {
+            url.addQueryParameter("p", filterProfileName);
+        }
+
+        return new Request.Builder()
+                .url(url.build())
+                .header("Accept", accept)
+                .post(body)
+                .build();
+
+    }
+
+    private boolean isHandled(Response response) {
+
+        // Server errors indicate an unhealthy replica. Anything else was handled by the replica.
+        return response.code() < 500;
+
+    }
+
+    private FilterResponse toFilterResponse(String context, Response response) throws IOException {
+
+        checkResponse(response);
+
+        return new FilterResponse(response.body().string(), context, response.header(HEADER_DOCUMENT_ID));
+
+    }
+
+    private void checkResponse(Response response) {
+
+        if(!response.isSuccessful()) {
+
+            if(response.code() == 401) {
+                throw new UnauthorizedException("Unauthorized");
+            } else if(response.code() == 503) {
+                throw new ServiceUnavailableException("Service unavailable");
+            } else {
+                throw new ClientException("Unknown error: HTTP " + response.code());
+            }
+
+        }
+
+    }
+
+}
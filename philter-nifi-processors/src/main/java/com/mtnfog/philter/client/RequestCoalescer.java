@@ -0,0 +1,148 @@
+/*
+ * Copyright 2021 Mountain Fog, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtnfog.philter.client;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * Makes sure identical requests to Philter that are in flight at the same time are only
+ * sent once. The first caller for a key sends the request and every caller with the same
+ * key that arrives before it completes shares its result.
+ * @param <T> The type of the result.
+ */
+public class RequestCoalescer<T> {
+
+    /**
+     * A request that blocks until it completes.
+     * @param <T> The type of the result.
+     */
+    public interface Request<T> {
+
+        T execute() throws IOException;
+
+    }
+
+    private final ConcurrentMap<String, CompletableFuture<T>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Sends a request unless an identical request is already in flight, and waits for the result.
+     * @param key The key identifying identical requests.
+     * @param request The request. It is only called if no identical request is in flight.
+     * @return The result of the request.
+     * @throws IOException Thrown if the request, whichever caller sent it, failed.
+     */
+    public T execute(String key, Request<T> request) throws IOException {
+
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        final CompletableFuture<T> existing = inFlight.putIfAbsent(key, future);
+
+        if(existing != null) {
+            return await(existing);
+        }
+
+        try {
+
+            final T result = request.execute();
+            future.complete(result);
+            return result;
+
+        } catch (IOException | RuntimeException | Error ex) {
+
+            future.completeExceptionally(ex);
+            throw ex;
+
+        } finally {
+
+            inFlight.remove(key, future);
+
+        }
+
+    }
+
+    /**
+     * Sends a request unless an identical request is already in flight, without waiting for the result.
+     * @param key The key identifying identical requests.
+     * @param request Starts the request. It is only called if no identical request is in flight.
+     * @return A future that is completed with the result of the request.
+     */
+    public CompletableFuture<T> executeAsync(String key, Supplier<CompletableFuture<T>> request) {
+
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        final CompletableFuture<T> existing = inFlight.putIfAbsent(key, future);
+
+        if(existing != null) {
+            return existing;
+        }
+
+        final CompletableFuture<T> started;
+
+        try {
+            started = request.get();
+        } catch (RuntimeException | Error ex) {
+            inFlight.remove(key, future);
+            future.completeExceptionally(ex);
+            throw ex;
+        }
+
+        started.whenComplete((result, throwable) -> {
+
+            inFlight.remove(key, future);
+
+            if(throwable == null) {
+                future.complete(result);
+            } else {
+                future.completeExceptionally(throwable);
+            }
+
+        });
+
+        return future;
+
+    }
+
+    private T await(CompletableFuture<T> future) throws IOException {
+
+        try {
+
+            return future.get();
+
+        } catch (InterruptedException ex) {
+
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for an identical request to Philter.", ex);
+
+        } catch (ExecutionException ex) {
+
+            if(ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            } else if(ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            } else if(ex.getCause() instanceof Error) {
+                throw (Error) ex.getCause();
+            }
+
+            throw new IOException(ex.getCause());
+
+        }
+
+    }
+
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2021 Mountain Fog, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtnfog.philter.client;
+
+/**
+ * Receives the outcome of each request made by a {@link PhilterHttpClient}.
+ */
+public interface RequestListener {
+
+    /**
+     * Called when a request to Philter completes.
+     * @param startNanos The {@link System#nanoTime()} when the request was sent.
+     * @param latencyNanos The time from sending the request until the response headers were received or the request failed.
+     * @param success Whether or not Philter handled the request. Client errors count as handled.
+     */
+    void onRequestCompleted(long startNanos, long latencyNanos, boolean success);
+
+}
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2021 Mountain Fog, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtnfog.philter.client;
+
+import com.mtnfog.philter.cache.ContentDigest;
+import com.mtnfog.philter.cache.FilterResultCache;
+import com.mtnfog.philter.model.ExplainResponse;
+import com.mtnfog.philter.model.Span;
+import com.mtnfog.philter.text.DocumentBatch;
+import com.mtnfog.philter.text.SpanSplicer;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Filters many short values, such as the fields of records, with as few requests to Philter
+ * as possible by joining the values into a {@link DocumentBatch} of about a target size.
+ *
+ * Values that repeat, such as the same name in many records, can be memoized so each distinct
+ * value is only sent to Philter once and its filtered value is reused.
+ */
+public class ValueFilter {
+
+    // Values are always sent to Philter as plain text.
+    private static final String MIME_TYPE = "text/plain";
+
+    private final PhilterHttpClient philterHttpClient;
+    private final String filterProfileName;
+    private final String context;
+    private final long targetSize;
+    private final FilterResultCache memo;
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+    private final AtomicLong memoHits = new AtomicLong();
+
+    /**
+     * Creates a filter.
+     * @param philterHttpClient The {@link PhilterHttpClient}.
+     * @param filterProfileName The name of the filter profile.
+     * @param context The document context.
+     * @param targetSize The number of characters to send to Philter in each request.
+     * @param memo Holds the filtered value of each value already sent to Philter, or <code>null</code> to send every value.
+     *             The memo may be shared with filters for other filter profiles and contexts.
+     */
+    public ValueFilter(PhilterHttpClient philterHttpClient, String filterProfileName, String context, long targetSize, FilterResultCache memo) {
+
+        this.philterHttpClient = philterHttpClient;
+        this.filterProfileName = filterProfileName;
+        this.context = context;
+        this.targetSize = targetSize;
+        this.memo = memo;
+
+    }
+
+    /**
+     * Filters values. Blank values are not sent to Philter.
+     * @param values The values.
+     * @return The filtered values in the same order.
+     * @throws IOException Thrown if a request to Philter fails.
+     */
+    public List<String> filter(List<String> values) throws IOException {
+
+        final List<String> filtered = new ArrayList<>(values);
+
+        // The positions of each value that needs to be sent to Philter. Repeated values are only sent once when memoizing.
+        final Map<String, List<Integer>> positions = new LinkedHashMap<>();
+        final List<List<Integer>> unique = new ArrayList<>();
+
+        for(int i = 0; i < values.size(); i++) {
+
+            final String value = values.get(i);
+
+            if(StringUtils.isBlank(value)) {
+                continue;
+            }
+
+            if(memo == null) {
+                unique.add(Collections.singletonList(i));
+                continue;
+            }
+
+            final String memoized = memo.get(getMemoKey(value));
+
+            if(memoized != null) {
+                filtered.set(i, memoized);
+                memoHits.incrementAndGet();
+            } else if(positions.containsKey(value)) {
+                positions.get(value).add(i);
+                memoHits.incrementAndGet();
+            } else {
+                positions.put(value, new ArrayList<>(Collections.singletonList(i)));
+            }
+
+        }
+
+        unique.addAll(positions.values());
+
+        final List<List<Integer>> batch = new ArrayList<>();
+
+        long size = 0;
+
+        for(final List<Integer> value : unique) {
+
+            final int length = values.get(value.get(0)).length();
+
+            if(!batch.isEmpty() && size + length > targetSize) {
+                filterBatch(values, batch, filtered);
+                batch.clear();
+                size = 0;
+            }
+
+            batch.add(value);
+            size += length + DocumentBatch.SEPARATOR.length();
+
+        }
+
+        if(!batch.isEmpty()) {
+            filterBatch(values, batch, filtered);
+        }
+
+        return filtered;
+
+    }
+
+    /**
+     * Gets the number of requests sent to Philter.
+     * @return The number of requests sent to Philter.
+     */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * Gets the number of batches that had to be sent again one value at a time because a span
+     * crossed from one value into another.
+     * @return The number of batches sent again.
+     */
+    public long getFallbacks() {
+        return fallbacks.get();
+    }
+
+    /**
+     * Gets the number of values that were not sent to Philter because they were memoized.
+     * @return The number of memoized values.
+     */
+    public long getMemoHits() {
+        return memoHits.get();
+    }
+
+    private void filterBatch(List<String> values, List<List<Integer>> batch, List<String> filtered) throws IOException {
+
+        final List<String> documents = new ArrayList<>(batch.size());
+
+        for(final List<Integer> value : batch) {
+            documents.add(values.get(value.get(0)));
+        }
+
+        final List<String> results = filterDocuments(documents);
+
+        for(int i = 0; i < batch.size(); i++) {
+
+            for(final int position : batch.get(i)) {
+                filtered.set(position, results.get(i));
+            }
+
+            if(memo != null) {
+                memo.put(getMemoKey(documents.get(i)), results.get(i));
+            }
+
+        }
+
+    }
+
+    private List<String> filterDocuments(List<String> documents) throws IOException {
+
+        final List<String> results = new ArrayList<>(documents.size());
+
+        if(documents.size() > 1) {
+
+            final DocumentBatch documentBatch = new DocumentBatch(documents);
+            final ExplainResponse explainResponse = philterHttpClient.explain(context, null, filterProfileName, documentBatch.getText());
+
+            requests.incrementAndGet();
+
+            final List<List<Span>> spans = documentBatch.split(SpanSplicer.getAppliedSpans(explainResponse));
+
+            if(spans != null) {
+
+                for(int i = 0; i < documents.size(); i++) {
+                    results.add(SpanSplicer.splice(documents.get(i), SpanSplicer.resolveOverlaps(spans.get(i))));
+                }
+
+                return results;
+
+            }
+
+            fallbacks.incrementAndGet();
+
+        }
+
+        for(final String document : documents) {
+            results.add(philterHttpClient.filter(context, null, filterProfileName, document).getFilteredText());
+            requests.incrementAndGet();
+        }
+
+        return results;
+
+    }
+
+    private String getMemoKey(String value) {
+
+        // Key on a digest so the memo does not hold the values themselves, which are likely to be PII.
+        return new ContentDigest(filterProfileName, context, MIME_TYPE).update(value).toHex();
+
+    }
+
+}
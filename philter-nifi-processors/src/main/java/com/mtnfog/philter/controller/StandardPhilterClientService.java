@@ -0,0 +1,233 @@
+/*
+ * Copyright 2021 Mountain Fog, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtnfog.philter.controller;
+
+import com.mtnfog.philter.client.PhilterEndpoints;
+import com.mtnfog.philter.util.UnsafeOkHttpClient;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.apache.nifi.annotation.documentation.CapabilityDescription;
+import org.apache.nifi.annotation.documentation.Tags;
+import org.apache.nifi.annotation.lifecycle.OnDisabled;
+import org.apache.nifi.annotation.lifecycle.OnEnabled;
+import org.apache.nifi.components.PropertyDescriptor;
+import org.apache.nifi.controller.AbstractControllerService;
+import org.apache.nifi.controller.ConfigurationContext;
+import org.apache.nifi.expression.ExpressionLanguageScope;
+import org.apache.nifi.processor.util.StandardValidators;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@Tags({"philter", "client", "http", "pool"})
+@CapabilityDescription("Provides a single tuned HTTP client for communicating with Philter that is shared by all processors using this service.")
+public class StandardPhilterClientService extends AbstractControllerService implements PhilterClientService {
+
+    public static final PropertyDescriptor PHILTER_API_ENDPOINT = new PropertyDescriptor.Builder()
+            .name("Philter API Endpoint")
+            .description("The endpoint of the Philter API. Multiple Philter replicas can be given as a comma-separated list of endpoints.")
+            .defaultValue("http://localhost:8080/")
+            .addValidator(StandardValidators.createListValidator(true, true, StandardValidators.URL_VALIDATOR))
+            .expressionLanguageSupported(ExpressionLanguageScope.VARIABLE_REGISTRY)
+            .required(true)
+            .build();
+
+    public static final PropertyDescriptor DISABLE_CERTIFICATE_VALIDATION = new PropertyDescriptor.Builder()
+            .name("Ignore self-signed certificates")
+            .description("Whether or not to disable certification validation of certificates used by Philter's API.")
+            .defaultValue("false")
+            .addValidator(StandardValidators.BOOLEAN_VALIDATOR)
+            .required(true)
+            .build();
+
+    public static final PropertyDescriptor TIMEOUT = new PropertyDescriptor.Builder()
+            .name("Timeout")
+            .description("The connect, read, and write timeout for requests to Philter.")
+            .defaultValue("300 secs")
+            .addValidator(StandardValidators.TIME_PERIOD_VALIDATOR)
+            .required(true)
+            .build();
+
+    public static final PropertyDescriptor MAX_IDLE_CONNECTIONS = new PropertyDescriptor.Builder()
+            .name("Maximum Idle Connections")
+            .description("The maximum number of idle connections to Philter kept in the connection pool.")
+            .defaultValue("20")
+            .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+            .required(true)
+            .build();
+
+    public static final PropertyDescriptor KEEP_ALIVE_DURATION = new PropertyDescriptor.Builder()
+            .name("Keep-Alive Duration")
+            .description("How long an idle connection to Philter is kept in the connection pool before it is closed.")
+            .defaultValue("5 mins")
+            .addValidator(StandardValidators.TIME_PERIOD_VALIDATOR)
+            .required(true)
+            .build();
+
+    public static final PropertyDescriptor MAX_REQUESTS = new PropertyDescriptor.Builder()
+            .name("Maximum Requests")
+            .description("The maximum number of asynchronous requests to Philter that may execute concurrently across all processors.")
+            .defaultValue("64")
+            .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+            .required(true)
+            .build();
+
+    public static final PropertyDescriptor MAX_REQUESTS_PER_HOST = new PropertyDescriptor.Builder()
+            .name("Maximum Requests Per Host")
+            .description("The maximum number of asynchronous requests to a single Philter host that may execute concurrently across all processors.")
+            .defaultValue("32")
+            .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+            .required(true)
+            .build();
+
+    public static final PropertyDescriptor PREWARM_CONNECTIONS = new PropertyDescriptor.Builder()
+            .name("Pre-Warm Connections")
+            .description("The number of connections to each Philter endpoint to open when the service is enabled so the first requests "
+                    + "do not pay for connection and TLS setup. A value of 0 disables pre-warming.")
+            .defaultValue("0")
+            .addValidator(StandardValidators.NON_NEGATIVE_INTEGER_VALIDATOR)
+            .required(true)
+            .build();
+
+    private static final List<PropertyDescriptor> DESCRIPTORS;
+
+    static {
+
+        final List<PropertyDescriptor> descriptors = new ArrayList<>();
+
+        descriptors.add(PHILTER_API_ENDPOINT);
+        descriptors.add(DISABLE_CERTIFICATE_VALIDATION);
+        descriptors.add(TIMEOUT);
+        descriptors.add(MAX_IDLE_CONNECTIONS);
+        descriptors.add(KEEP_ALIVE_DURATION);
+        descriptors.add(MAX_REQUESTS);
+        descriptors.add(MAX_REQUESTS_PER_HOST);
+        descriptors.add(PREWARM_CONNECTIONS);
+
+        DESCRIPTORS = Collections.unmodifiableList(descriptors);
+
+    }
+
+    private volatile List<String> endpoints;
+    private volatile OkHttpClient okHttpClient;
+
+    @Override
+    protected List<PropertyDescriptor> getSupportedPropertyDescriptors() {
+        return DESCRIPTORS;
+    }
+
+    @OnEnabled
+    public void onEnabled(final ConfigurationContext context) throws Exception {
+
+        final List<String> philterApiEndpoints = PhilterEndpoints.parse(context.getProperty(PHILTER_API_ENDPOINT).evaluateAttributeExpressions().getValue());
+        final boolean disableCertificateValidation = context.getProperty(DISABLE_CERTIFICATE_VALIDATION).asBoolean();
+        final long timeoutMs = context.getProperty(TIMEOUT).asTimePeriod(TimeUnit.MILLISECONDS);
+
+        final OkHttpClient.Builder builder;
+
+        if(disableCertificateValidation) {
+            builder = UnsafeOkHttpClient.getUnsafeOkHttpClient().newBuilder();
+        } else {
+            builder = new OkHttpClient.Builder();
+        }
+
+        final Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(context.getProperty(MAX_REQUESTS).asInteger());
+        dispatcher.setMaxRequestsPerHost(context.getProperty(MAX_REQUESTS_PER_HOST).asInteger());
+
+        this.okHttpClient = builder
+                .connectTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+                .writeTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+                .readTimeout(timeoutMs, TimeUnit.MILLISECONDS)
+                .connectionPool(new ConnectionPool(context.getProperty(MAX_IDLE_CONNECTIONS).asInteger(),
+                        context.getProperty(KEEP_ALIVE_DURATION).asTimePeriod(TimeUnit.MILLISECONDS), TimeUnit.MILLISECONDS))
+                .dispatcher(dispatcher)
+                .build();
+
+        this.endpoints = philterApiEndpoints;
+
+        prewarm(context.getProperty(PREWARM_CONNECTIONS).asInteger());
+
+    }
+
+    @OnDisabled
+    public void onDisabled() {
+
+        if(okHttpClient != null) {
+            okHttpClient.dispatcher().executorService().shutdown();
+            okHttpClient.connectionPool().evictAll();
+            okHttpClient = null;
+        }
+
+    }
+
+    @Override
+    public List<String> getEndpoints() {
+        return endpoints;
+    }
+
+    @Override
+    public OkHttpClient getOkHttpClient() {
+        return okHttpClient;
+    }
+
+    private void prewarm(int connections) {
+
+        for(final String endpoint : endpoints) {
+            prewarm(endpoint, connections);
+        }
+
+    }
+
+    private void prewarm(String endpoint, int connections) {
+
+        final Request request = new Request.Builder()
+                .url(HttpUrl.get(endpoint).resolve("api/status"))
+                .get()
+                .build();
+
+        // Requests that are in flight at the same time each open their own connection
+        // which is returned to the pool when the request completes.
+        for(int i = 0; i < connections; i++) {
+
+            okHttpClient.newCall(request).enqueue(new Callback() {
+
+                @Override
+                public void onFailure(Call call, IOException ex) {
+                    getLogger().warn("Unable to pre-warm connection to Philter.", ex);
+                }
+
+                @Override
+                public void onResponse(Call call, Response response) {
+                    response.close();
+                }
+
+            });
+
+        }
+
+    }
+
+}
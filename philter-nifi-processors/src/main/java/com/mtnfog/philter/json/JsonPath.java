@@ -0,0 +1,154 @@
+/*
+ * Copyright 2021 Mountain Fog, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtnfog.philter.json;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A path to values in a JSON document, such as <code>$.patient.name</code>. An array index of
+ * <code>[*]</code> selects every element of the array, as in <code>$.patients[*].name</code>.
+ *
+ * Only this subset of JSONPath is supported. Paths that could never select a value, such as
+ * paths with a specific array index or in bracket notation, are rejected rather than accepted
+ * and silently left unfiltered.
+ */
+public class JsonPath {
+
+    private static final String EVERY_ELEMENT = "[*]";
+
+    private final String path;
+
+    // The field name of each step, or null where the step is every element of an array.
+    private final List<String> names;
+
+    private JsonPath(String path, List<String> names) {
+        this.path = path;
+        this.names = names;
+    }
+
+    /**
+     * Parses a path.
+     * @param path The path.
+     * @return The {@link JsonPath}.
+     * @throws IllegalArgumentException Thrown if the path is not valid or is not supported.
+     */
+    public static JsonPath parse(String path) {
+
+        final String trimmed = path.trim();
+
+        if(!trimmed.startsWith("$")) {
+            throw new IllegalArgumentException("The path " + trimmed + " must start with $.");
+        }
+
+        final List<String> names = new ArrayList<>();
+
+        int i = 1;
+
+        while(i < trimmed.length()) {
+
+            if(trimmed.charAt(i) == '.') {
+
+                int end = i + 1;
+
+                while(end < trimmed.length() && trimmed.charAt(end) != '.' && trimmed.charAt(end) != '[' && trimmed.charAt(end) != ']') {
+                    end++;
+                }
+
+                final String name = trimmed.substring(i + 1, end);
+
+                if(name.isEmpty() || name.equals("*")) {
+                    throw new IllegalArgumentException("The path " + trimmed + " is not supported. Each . must be followed by a field name.");
+                }
+
+                names.add(name);
+                i = end;
+
+            } else if(trimmed.startsWith(EVERY_ELEMENT, i)) {
+
+                names.add(null);
+                i += EVERY_ELEMENT.length();
+
+            } else {
+
+                throw new IllegalArgumentException("The path " + trimmed + " is not supported. Only .name and [*] can follow $, "
+                        + "so specific array indexes and bracket notation can't be used.");
+
+            }
+
+        }
+
+        return new JsonPath(trimmed, Collections.unmodifiableList(names));
+
+    }
+
+    /**
+     * Parses a comma-separated list of paths.
+     * @param paths The paths.
+     * @return The {@link JsonPath paths}.
+     * @throws IllegalArgumentException Thrown if there are no paths or any of the paths is not valid or not supported.
+     */
+    public static List<JsonPath> parseList(String paths) {
+
+        final List<JsonPath> parsed = new ArrayList<>();
+
+        for(final String path : paths.split(",")) {
+            if(!path.trim().isEmpty()) {
+                parsed.add(parse(path));
+            }
+        }
+
+        if(parsed.isEmpty()) {
+            throw new IllegalArgumentException("At least one path is required.");
+        }
+
+        return parsed;
+
+    }
+
+    /**
+     * Gets the number of steps after the <code>$</code>.
+     * @return The number of steps.
+     */
+    public int getLength() {
+        return names.size();
+    }
+
+    /**
+     * Gets whether a step selects every element of an array.
+     * @param step The index of the step.
+     * @return <code>true</code> if the step is <code>[*]</code>.
+     */
+    public boolean isEveryElement(int step) {
+        return names.get(step) == null;
+    }
+
+    /**
+     * Gets the field name a step selects.
+     * @param step The index of the step.
+     * @return The field name, or <code>null</code> if the step selects every element of an array.
+     */
+    public String getName(int step) {
+        return names.get(step);
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright 2021 Mountain Fog, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtnfog.philter.json;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.google.gson.stream.MalformedJsonException;
+import com.mtnfog.philter.client.ValueFilter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Filters the string values at a set of paths in a JSON document while copying it from one stream
+ * to another, token by token, so the document is never held in memory as a tree. Only the selected
+ * values are sent to Philter and everything else in the document is copied unchanged.
+ *
+ * Paths are {@link JsonPath paths}, which are written the way Gson reports them, such as
+ * <code>$.patient.name</code>. An array index of <code>[*]</code> matches every element, as in
+ * <code>$.patients[*].name</code>.
+ */
+public class StreamingJsonFilter {
+
+    // Tokens are held while values wait to be sent to Philter. This caps them when selected values are far apart.
+    private static final int MAX_BUFFERED_TOKENS = 65536;
+
+    private final Set<String> paths;
+    private final ValueFilter valueFilter;
+    private final long targetSize;
+
+    private final List<Token> tokens = new ArrayList<>();
+    private final List<Token> valueTokens = new ArrayList<>();
+    private long pendingSize;
+
+    /**
+     * Creates a filter.
+     * @param paths The paths of the values to filter.
+     * @param valueFilter The {@link ValueFilter} the selected values are sent to Philter with.
+     * @param targetSize The number of characters of selected values to collect before sending them to Philter.
+     */
+    public StreamingJsonFilter(Set<String> paths, ValueFilter valueFilter, long targetSize) {
+
+        this.paths = paths;
+        this.valueFilter = valueFilter;
+        this.targetSize = targetSize;
+
+    }
+
+    /**
+     * Parses a comma-separated list of paths.
+     * @param paths The paths.
+     * @return The paths.
+     * @throws IllegalArgumentException Thrown if there are no paths or any of the paths is not a {@link JsonPath}
+     *                                  this filter can match.
+     */
+    public static Set<String> parsePaths(String paths) {
+
+        final Set<String> parsed = new HashSet<>();
+
+        // Paths are matched as written so they are the same as the normalized paths Gson reports.
+        for(final JsonPath path : JsonPath.parseList(paths)) {
+            parsed.add(path.toString());
+        }
+
+        return parsed;
+
+    }
+
+    /**
+     * Copies a JSON document, filtering the values at the paths.
+     * @param in The UTF-8 encoded document. The stream is not closed.
+     * @param out The stream to receive the filtered document. The stream is not closed.
+     * @return The number of values that were filtered.
+     * @throws IOException Thrown if the document cannot be read or written, is followed by anything other than
+     *                     whitespace, or a request to Philter fails.
+     */
+    public long filter(InputStream in, OutputStream out) throws IOException {
+
+        final JsonReader reader = new JsonReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        final JsonWriter writer = new JsonWriter(new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8)));
+
+        // Allow a document that is a single string or number.
+        writer.setLenient(true);
+
+        long count = 0;
+        int depth = 0;
+
+        do {
+
+            final JsonToken type = reader.peek();
+            final Token token = new Token(type);
+
+            switch(type) {
+                case BEGIN_OBJECT:
+                    reader.beginObject();
+                    depth++;
+                    break;
+                case END_OBJECT:
+                    reader.endObject();
+                    depth--;
+                    break;
+                case BEGIN_ARRAY:
+                    reader.beginArray();
+                    depth++;
+                    break;
+                case END_ARRAY:
+                    reader.endArray();
+                    depth--;
+                    break;
+                case NAME:
+                    token.value = reader.nextName();
+                    break;
+                case STRING:
+                    final boolean selected = paths.contains(normalize(reader.getPath()));
+                    token.value = reader.nextString();
+                    if(selected) {
+                        valueTokens.add(token);
+                        pendingSize += token.value.length();
+                        count++;
+                    }
+                    break;
+                case NUMBER:
+                    // The number is copied exactly as it was written.
+                    token.value = reader.nextString();
+                    break;
+                case BOOLEAN:
+                    token.value = String.valueOf(reader.nextBoolean());
+                    break;
+                case NULL:
+                    reader.nextNull();
+                    break;
+                default:
+                    throw new IOException("Unexpected JSON token " + type + " at " + reader.getPath() + ".");
+            }
+
+            // Nothing needs to wait for Philter until a value has been selected.
+            if(valueTokens.isEmpty()) {
+                token.write(writer);
+            } else {
+                tokens.add(token);
+            }
+
+            if(pendingSize >= targetSize || tokens.size() >= MAX_BUFFERED_TOKENS) {
+                flush(writer);
+            }
+
+        } while(depth > 0);
+
+        // Anything after the top-level value, such as a second document, would otherwise be dropped from the output.
+        final JsonToken trailing;
+
+        try {
+            trailing = reader.peek();
+        } catch (final MalformedJsonException ex) {
+            throw new IOException("The JSON document has content after its top-level value. Only a single JSON document can be filtered.", ex);
+        }
+
+        if(trailing != JsonToken.END_DOCUMENT) {
+            throw new IOException("The JSON document has content after its top-level value. Only a single JSON document can be filtered.");
+        }
+
+        flush(writer);
+        writer.flush();
+
+        return count;
+
+    }
+
+    private void flush(JsonWriter writer) throws IOException {
+
+        if(!valueTokens.isEmpty()) {
+
+            final List<String> values = new ArrayList<>(valueTokens.size());
+
+            for(final Token token : valueTokens) {
+                values.add(token.value);
+            }
+
+            final List<String> filtered = valueFilter.filter(values);
+
+            for(int i = 0; i < valueTokens.size(); i++) {
+                valueTokens.get(i).value = filtered.get(i);
+            }
+
+        }
+
+        for(final Token token : tokens) {
+            token.write(writer);
+        }
+
+        tokens.clear();
+        valueTokens.clear();
+        pendingSize = 0;
+
+    }
+
+    /**
+     * Replaces each array index in a path with <code>[*]</code>.
+     */
+    static String normalize(String path) {
+
+        final StringBuilder sb = new StringBuilder(path.length());
+
+        for(int i = 0; i < path.length(); i++) {
+
+            final char c = path.charAt(i);
+            sb.append(c);
+
+            if(c == '[') {
+
+                int end = i + 1;
+
+                while(end < path.length() && Character.isDigit(path.charAt(end))) {
+                    end++;
+                }
+
+                if(end > i + 1 && end < path.length() && path.charAt(end) == ']') {
+                    sb.append('*');
+                    i = end - 1;
+                }
+
+            }
+
+        }
+
+        return sb.toString();
+
+    }
+
+    private static class Token {
+
+        private final JsonToken type;
+        private String value;
+
+        private Token(JsonToken type) {
+            this.type = type;
+        }
+
+        private void write(JsonWriter writer) throws IOException {
+
+            switch(type) {
+                case BEGIN_OBJECT:
+                    writer.beginObject();
+                    break;
+                case END_OBJECT:
+                    writer.endObject();
+                    break;
+                case BEGIN_ARRAY:
+                    writer.beginArray();
+                    break;
+                case END_ARRAY:
+                    writer.endArray();
+                    break;
+                case NAME:
+                    writer.name(value);
+                    break;
+                case STRING:
+                    writer.value(value);
+                    break;
+                case NUMBER:
+                    writer.jsonValue(value);
+                    break;
+                case BOOLEAN:
+                    writer.value(Boolean.parseBoolean(value));
+                    break;
+                default:
+                    writer.nullValue();
+                    break;
+            }
+
+        }
+
+    }
+
+}
@@ -16,9 +16,34 @@
 package com.mtnfog.philter.processors;
 
 import com.mtnfog.philter.PhilterClient;
+import com.mtnfog.philter.cache.ContentDigest;
+import com.mtnfog.philter.cache.DiskResultCache;
+import com.mtnfog.philter.cache.DistributedResultCache;
+import com.mtnfog.philter.cache.FilterResultCache;
+import com.mtnfog.philter.client.AdaptiveConcurrencyLimiter;
+import com.mtnfog.philter.client.CircuitBreaker;
+import com.mtnfog.philter.client.InputStreamRequestBody;
+import com.mtnfog.philter.client.PhilterEndpoints;
+import com.mtnfog.philter.client.PhilterHttpClient;
+import com.mtnfog.philter.client.RequestCoalescer;
+import com.mtnfog.philter.client.ValueFilter;
+import com.mtnfog.philter.controller.PhilterClientService;
+import com.mtnfog.philter.json.StreamingJsonFilter;
+import com.mtnfog.philter.model.ExplainResponse;
 import com.mtnfog.philter.model.FilterResponse;
+import com.mtnfog.philter.model.Span;
+import com.mtnfog.philter.model.exceptions.ClientException;
+import com.mtnfog.philter.model.exceptions.ServiceUnavailableException;
+import com.mtnfog.philter.model.exceptions.UnauthorizedException;
+import com.mtnfog.philter.text.DocumentBatch;
+import com.mtnfog.philter.text.IdentifierScanner;
+import com.mtnfog.philter.text.PreScreen;
+import com.mtnfog.philter.text.SpanSplicer;
+import com.mtnfog.philter.text.TextChunker;
 import com.mtnfog.philter.util.UnsafeOkHttpClient;
+import okhttp3.ConnectionPool;
 import okhttp3.OkHttpClient;
+import okhttp3.RequestBody;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.nifi.annotation.behavior.ReadsAttribute;
@@ -29,17 +54,38 @@ import org.apache.nifi.annotation.documentation.CapabilityDescription;
 import org.apache.nifi.annotation.documentation.SeeAlso;
 import org.apache.nifi.annotation.documentation.Tags;
 import org.apache.nifi.annotation.lifecycle.OnScheduled;
+import org.apache.nifi.annotation.lifecycle.OnStopped;
+import org.apache.nifi.components.AllowableValue;
 import org.apache.nifi.components.PropertyDescriptor;
+import org.apache.nifi.components.PropertyValue;
+import org.apache.nifi.components.ValidationContext;
+import org.apache.nifi.components.ValidationResult;
+import org.apache.nifi.context.PropertyContext;
+import org.apache.nifi.distributed.cache.client.DistributedMapCacheClient;
 import org.apache.nifi.expression.ExpressionLanguageScope;
 import org.apache.nifi.flowfile.FlowFile;
-import org.apache.nifi.logging.ComponentLog;
 import org.apache.nifi.processor.*;
+import org.apache.nifi.processor.FlowFileFilter.FlowFileFilterResult;
 import org.apache.nifi.processor.exception.ProcessException;
+import org.apache.nifi.processor.io.StreamCallback;
 import org.apache.nifi.processor.util.StandardValidators;
 
+import java.io.File;
 import java.io.IOException;
-import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 @Tags({"philter", "phi", "pii", "nppi", "redact", "redaction", "filter", "randomize", "anonymize", "api"})
@@ -65,13 +111,37 @@ public class Philter extends AbstractProcessor {
 
     public static final PropertyDescriptor PHILTER_API_ENDPOINT = new PropertyDescriptor.Builder()
             .name("Philter API Endpoint")
-            .description("The endpoint of the Philter API.")
+            .description("The endpoint of the Philter API. Multiple Philter replicas can be given as a comma-separated list of endpoints.")
             .defaultValue("http://localhost:8080/")
-            .addValidator(StandardValidators.URL_VALIDATOR)
+            .addValidator(StandardValidators.createListValidator(true, true, StandardValidators.URL_VALIDATOR))
             .expressionLanguageSupported(ExpressionLanguageScope.VARIABLE_REGISTRY)
             .required(false)
             .build();
 
+    public static final PropertyDescriptor PHILTER_CLIENT_SERVICE = new PropertyDescriptor.Builder()
+            .name("Philter Client Service")
+            .description("The controller service that provides a shared HTTP client for communicating with Philter. "
+                    + "When set, the Philter API Endpoint and Ignore self-signed certificates properties are not used.")
+            .identifiesControllerService(PhilterClientService.class)
+            .required(false)
+            .build();
+
+    public static final AllowableValue LEAST_OUTSTANDING_REQUESTS = new AllowableValue(PhilterEndpoints.Strategy.LEAST_OUTSTANDING_REQUESTS.name(),
+            "Least Outstanding Requests", "Send each request to the Philter endpoint with the fewest requests in flight.");
+
+    public static final AllowableValue POWER_OF_TWO_CHOICES = new AllowableValue(PhilterEndpoints.Strategy.POWER_OF_TWO_CHOICES.name(),
+            "Power of Two Choices", "Pick two Philter endpoints at random and send the request to the one with the lower "
+                    + "average latency weighted by its requests in flight.");
+
+    public static final PropertyDescriptor LOAD_BALANCING_STRATEGY = new PropertyDescriptor.Builder()
+            .name("Load Balancing Strategy")
+            .description("How a Philter endpoint is selected for each request when more than one endpoint is configured. "
+                    + "Endpoints that fail repeatedly are ejected for a period of time regardless of the strategy.")
+            .allowableValues(LEAST_OUTSTANDING_REQUESTS, POWER_OF_TWO_CHOICES)
+            .defaultValue(LEAST_OUTSTANDING_REQUESTS.getValue())
+            .required(true)
+            .build();
+
     public static final PropertyDescriptor DISABLE_CERTIFICATE_VALIDATION = new PropertyDescriptor.Builder()
             .name("Ignore self-signed certificates")
             .description("Whether or not to disable certification validation of certificates used by Philter's API.")
@@ -80,13 +150,397 @@ public class Philter extends AbstractProcessor {
             .required(true)
             .build();
 
+    private static final String MIME_TYPE_JSON = "application/json";
+
     public static final PropertyDescriptor MIME_TYPE = new PropertyDescriptor.Builder()
             .name("MIME Type of Content")
-            .description("The mime type of the content.")
+            .description("The mime type of the content. For application/json content only the string values at the JSON paths are sent "
+                    + "to Philter and the document is copied around them as it is read. JSON content is always filtered synchronously, "
+                    + "one flowfile at a time, and is not cached.")
             .defaultValue("text/plain")
-            .allowableValues("text/plain")
+            .allowableValues("text/plain", MIME_TYPE_JSON)
+            .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
+            .required(true)
+            .build();
+
+    public static final PropertyDescriptor JSON_PATHS = new PropertyDescriptor.Builder()
+            .name("JSON Paths")
+            .description("A comma-separated list of paths to the string values to filter in application/json content, such as $.patient.name. "
+                    + "An array index of [*] matches every element of the array, as in $.patients[*].name. Specific array indexes, bracket "
+                    + "notation and other JSONPath expressions are not supported. The content must be a single JSON "
+                    + "document; flowfiles with more than one, such as newline-delimited JSON, are routed to failure and can be filtered "
+                    + "with PhilterRecord instead.")
+            .required(false)
+            .expressionLanguageSupported(ExpressionLanguageScope.FLOWFILE_ATTRIBUTES)
+            .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
+            .build();
+
+    public static final AllowableValue MEMOIZE_NONE = new AllowableValue("NONE", "None", "Send every value to Philter.");
+
+    public static final AllowableValue MEMOIZE_PER_FLOWFILE = new AllowableValue("PER_FLOWFILE", "Per FlowFile",
+            "Send each distinct value in a flowfile to Philter once and reuse its filtered value for the rest of the flowfile.");
+
+    public static final AllowableValue MEMOIZE_ACROSS_FLOWFILES = new AllowableValue("ACROSS_FLOWFILES", "Across FlowFiles",
+            "Send each distinct value to Philter once and reuse its filtered value for later flowfiles until it expires.");
+
+    public static final PropertyDescriptor VALUE_MEMOIZATION = new PropertyDescriptor.Builder()
+            .name("Value Memoization")
+            .description("How the filtered values of repeated values in JSON content and records are reused instead of sending the same "
+                    + "value to Philter again. Values are memoized separately for each filter profile and context.")
+            .allowableValues(MEMOIZE_NONE, MEMOIZE_PER_FLOWFILE, MEMOIZE_ACROSS_FLOWFILES)
+            .defaultValue(MEMOIZE_PER_FLOWFILE.getValue())
+            .required(true)
+            .build();
+
+    public static final PropertyDescriptor VALUE_MEMO_SIZE = new PropertyDescriptor.Builder()
+            .name("Value Memo Size")
+            .description("The maximum approximate size on the heap of the memoized values. The least recently used values are evicted first.")
+            .defaultValue("16 MB")
+            .addValidator(StandardValidators.DATA_SIZE_VALIDATOR)
+            .required(true)
+            .build();
+
+    public static final PropertyDescriptor VALUE_MEMO_TTL = new PropertyDescriptor.Builder()
+            .name("Value Memo TTL")
+            .description("How long a value memoized across flowfiles is reused after it was filtered by Philter.")
+            .defaultValue("1 hour")
+            .addValidator(StandardValidators.TIME_PERIOD_VALIDATOR)
+            .required(true)
+            .build();
+
+    public static final PropertyDescriptor BATCH_SIZE = new PropertyDescriptor.Builder()
+            .name("Batch Size")
+            .description("The maximum number of flowfiles to pull from the queue and filter in a single execution of the processor.")
+            .defaultValue("1")
+            .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+            .required(true)
+            .build();
+
+    public static final PropertyDescriptor ASYNCHRONOUS_REQUESTS = new PropertyDescriptor.Builder()
+            .name("Asynchronous Requests")
+            .description("Whether or not to send requests to Philter asynchronously. When enabled, the flowfiles in a batch are sent "
+                    + "to Philter without waiting for each response so their requests are pipelined, up to the maximum outstanding requests. "
+                    + "Each flowfile is transferred when its response arrives. The batch holds its processor thread until every request in it "
+                    + "has been answered, so each batch takes a thread for the latency of its slowest request.")
+            .defaultValue("false")
+            .allowableValues("true", "false")
+            .addValidator(StandardValidators.BOOLEAN_VALIDATOR)
+            .required(true)
+            .build();
+
+    public static final PropertyDescriptor MAX_OUTSTANDING_REQUESTS = new PropertyDescriptor.Builder()
+            .name("Maximum Outstanding Requests")
+            .description("The maximum number of asynchronous requests to Philter that may be in flight at once for this processor. "
+                    + "When a Philter Client Service is used, the service's request limits also apply.")
+            .defaultValue("32")
+            .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+            .required(true)
+            .build();
+
+    public static final PropertyDescriptor STREAM_CONTENT = new PropertyDescriptor.Builder()
+            .name("Stream Content")
+            .description("Whether or not to stream the flowfile content to Philter instead of first reading it into memory. "
+                    + "Streaming does not apply to asynchronous requests.")
+            .defaultValue("false")
+            .allowableValues("true", "false")
+            .addValidator(StandardValidators.BOOLEAN_VALIDATOR)
+            .required(true)
+            .build();
+
+    public static final PropertyDescriptor STREAM_FILTERED_CONTENT = new PropertyDescriptor.Builder()
+            .name("Stream Filtered Content")
+            .description("Whether or not to stream the filtered text from Philter's response directly into the redacted flowfile "
+                    + "instead of first reading it into memory. Streaming does not apply to asynchronous requests.")
+            .defaultValue("false")
+            .allowableValues("true", "false")
+            .addValidator(StandardValidators.BOOLEAN_VALIDATOR)
+            .required(true)
+            .build();
+
+    public static final PropertyDescriptor APPLY_SPANS_LOCALLY = new PropertyDescriptor.Builder()
+            .name("Apply Spans Locally")
+            .description("Whether or not to read only the spans Philter identified from its response and replace them in the flowfile content "
+                    + "as it is copied, leaving all other content unchanged. The flowfile content is streamed to Philter and the filtered text "
+                    + "is never held in memory. This takes precedence over streaming the filtered content and does not apply to asynchronous "
+                    + "or grouped requests. The content must be UTF-8. Content that is not valid UTF-8 is routed to failure because "
+                    + "the positions of the spans can't be trusted.")
+            .defaultValue("false")
+            .allowableValues("true", "false")
+            .addValidator(StandardValidators.BOOLEAN_VALIDATOR)
+            .required(true)
+            .build();
+
+    public static final PropertyDescriptor CHUNK_SIZE = new PropertyDescriptor.Builder()
+            .name("Chunk Size")
+            .description("Flowfiles with more than this many characters are split into overlapping chunks of at most this many characters "
+                    + "that are filtered concurrently and then reassembled. Chunks end at sentence or whitespace boundaries when possible. "
+                    + "A value of 0 disables chunking.")
+            .defaultValue("0")
+            .addValidator(StandardValidators.NON_NEGATIVE_INTEGER_VALIDATOR)
+            .required(true)
+            .build();
+
+    public static final PropertyDescriptor CHUNK_OVERLAP = new PropertyDescriptor.Builder()
+            .name("Chunk Overlap")
+            .description("The number of characters each chunk overlaps with the previous chunk so that sensitive information "
+                    + "spanning a chunk boundary is identified. Must be less than half of the chunk size.")
+            .defaultValue("200")
+            .addValidator(StandardValidators.NON_NEGATIVE_INTEGER_VALIDATOR)
+            .required(true)
+            .build();
+
+    public static final PropertyDescriptor CHUNK_CONCURRENCY = new PropertyDescriptor.Builder()
+            .name("Chunk Concurrency")
+            .description("The maximum number of chunks that are filtered by Philter at the same time.")
+            .defaultValue("4")
+            .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+            .required(true)
+            .build();
+
+    public static final PropertyDescriptor ADAPTIVE_CONCURRENCY = new PropertyDescriptor.Builder()
+            .name("Adaptive Concurrency")
+            .description("Whether or not to adapt the number of requests to Philter in flight to the latency Philter responds with. "
+                    + "When the limit is reached the processor yields and leaves flowfiles on the queue.")
+            .defaultValue("false")
+            .allowableValues("true", "false")
+            .addValidator(StandardValidators.BOOLEAN_VALIDATOR)
+            .required(true)
+            .build();
+
+    public static final PropertyDescriptor MAX_CONCURRENCY = new PropertyDescriptor.Builder()
+            .name("Maximum Concurrency")
+            .description("The upper bound of the adaptive limit on requests to Philter in flight.")
+            .defaultValue("64")
+            .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+            .required(true)
+            .build();
+
+    public static final PropertyDescriptor CIRCUIT_BREAKER = new PropertyDescriptor.Builder()
+            .name("Circuit Breaker")
+            .description("Whether or not to stop sending requests to Philter while too many recent requests have failed. "
+                    + "While the circuit breaker is open the processor yields and leaves flowfiles on the queue, and a single "
+                    + "flowfile is sent to Philter once the open duration has elapsed to detect when Philter has recovered.")
+            .defaultValue("false")
+            .allowableValues("true", "false")
+            .addValidator(StandardValidators.BOOLEAN_VALIDATOR)
+            .required(true)
+            .build();
+
+    public static final PropertyDescriptor CIRCUIT_BREAKER_WINDOW = new PropertyDescriptor.Builder()
+            .name("Circuit Breaker Window")
+            .description("The number of most recent requests to Philter the failure rate is calculated over.")
+            .defaultValue("10")
+            .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+            .required(true)
+            .build();
+
+    public static final PropertyDescriptor CIRCUIT_BREAKER_FAILURE_RATE = new PropertyDescriptor.Builder()
+            .name("Circuit Breaker Failure Rate")
+            .description("The percentage of failed requests in the window that opens the circuit breaker. Requests fail when "
+                    + "Philter cannot be reached, times out, or responds with a server error.")
+            .defaultValue("50")
+            .addValidator(StandardValidators.createLongValidator(1, 100, true))
+            .required(true)
+            .build();
+
+    public static final PropertyDescriptor CIRCUIT_BREAKER_OPEN_DURATION = new PropertyDescriptor.Builder()
+            .name("Circuit Breaker Open Duration")
+            .description("How long the circuit breaker stays open before a single request is sent to Philter to see if it has recovered.")
+            .defaultValue("30 secs")
+            .addValidator(StandardValidators.TIME_PERIOD_VALIDATOR)
+            .required(true)
+            .build();
+
+    public static final PropertyDescriptor RESULT_CACHE_SIZE = new PropertyDescriptor.Builder()
+            .name("Result Cache Size")
+            .description("The maximum amount of heap used to cache filtered text so that documents with identical content, filter profile, "
+                    + "context, and MIME type are filtered by Philter only once. Filter profiles that replace sensitive information with "
+                    + "random values will return the same replacements for cached documents. A value of 0 disables the cache.")
+            .defaultValue("0 MB")
+            .addValidator(StandardValidators.DATA_SIZE_VALIDATOR)
+            .required(true)
+            .build();
+
+    public static final PropertyDescriptor RESULT_CACHE_MAX_ENTRY_SIZE = new PropertyDescriptor.Builder()
+            .name("Result Cache Maximum Entry Size")
+            .description("Filtered text larger than this is not cached. For the distributed cache this is the compressed size. "
+                    + "Filtered text streamed directly into the redacted flowfile is never cached.")
+            .defaultValue("1 MB")
+            .addValidator(StandardValidators.DATA_SIZE_VALIDATOR)
+            .required(true)
+            .build();
+
+    public static final PropertyDescriptor RESULT_CACHE_TTL = new PropertyDescriptor.Builder()
+            .name("Result Cache TTL")
+            .description("How long filtered text is kept in the cache.")
+            .defaultValue("1 hour")
+            .addValidator(StandardValidators.TIME_PERIOD_VALIDATOR)
+            .required(true)
+            .build();
+
+    public static final PropertyDescriptor DISK_CACHE_DIRECTORY = new PropertyDescriptor.Builder()
+            .name("Disk Cache Directory")
+            .description("The directory of a cache of filtered text on disk that sits behind the result cache on the heap and survives "
+                    + "restarts. The cache is loaded in the background when the processor is started and saved when it is stopped. "
+                    + "Each processor must use its own directory. When not set there is no disk cache.")
+            .addValidator(StandardValidators.createDirectoryExistsValidator(true, true))
+            .expressionLanguageSupported(ExpressionLanguageScope.VARIABLE_REGISTRY)
+            .required(false)
+            .build();
+
+    public static final PropertyDescriptor DISK_CACHE_SIZE = new PropertyDescriptor.Builder()
+            .name("Disk Cache Size")
+            .description("The maximum size of the compressed filtered text in the disk cache. The oldest entries are removed first.")
+            .defaultValue("1 GB")
+            .addValidator(StandardValidators.DATA_SIZE_VALIDATOR)
+            .required(true)
+            .build();
+
+    public static final PropertyDescriptor DISK_CACHE_TTL = new PropertyDescriptor.Builder()
+            .name("Disk Cache TTL")
+            .description("How long filtered text is kept in the disk cache.")
+            .defaultValue("1 day")
+            .addValidator(StandardValidators.TIME_PERIOD_VALIDATOR)
+            .required(true)
+            .build();
+
+    public static final PropertyDescriptor DISTRIBUTED_CACHE_SERVICE = new PropertyDescriptor.Builder()
+            .name("Distributed Cache Service")
+            .description("The distributed map cache client used to share filtered text between the nodes of a cluster so that a document "
+                    + "filtered on one node is not sent to Philter again by another. Values are compressed. When a result cache size is also "
+                    + "set, the local cache is checked first.")
+            .identifiesControllerService(DistributedMapCacheClient.class)
+            .required(false)
+            .build();
+
+    public static final PropertyDescriptor DISTRIBUTED_CACHE_TTL = new PropertyDescriptor.Builder()
+            .name("Distributed Cache TTL")
+            .description("How long filtered text is kept in the distributed cache.")
+            .defaultValue("1 day")
+            .addValidator(StandardValidators.TIME_PERIOD_VALIDATOR)
+            .required(true)
+            .build();
+
+    public static final PropertyDescriptor COALESCE_REQUESTS = new PropertyDescriptor.Builder()
+            .name("Coalesce Requests")
+            .description("Whether or not documents with identical content, filter profile, context, and MIME type that are being filtered "
+                    + "at the same time share a single request to Philter. If the shared request fails, every document sharing it fails. "
+                    + "Documents whose filtered text is streamed directly into the redacted flowfile do not share requests.")
+            .defaultValue("false")
+            .allowableValues("true", "false")
+            .addValidator(StandardValidators.BOOLEAN_VALIDATOR)
+            .required(true)
+            .build();
+
+    public static final PropertyDescriptor GROUP_REQUESTS = new PropertyDescriptor.Builder()
+            .name("Group Requests")
+            .description("Whether or not flowfiles in a batch that have the same filter profile and context are joined and filtered by "
+                    + "Philter in a single request, spreading the cost of each request across the group. Grouped flowfiles are read into "
+                    + "memory. If Philter identifies sensitive information that crosses from one document into another, the group is "
+                    + "filtered one flowfile at a time instead. Grouped flowfiles without a document ID are not given one because the ID "
+                    + "Philter assigns belongs to the joined text. Grouping does not apply to asynchronous requests, to flowfiles large "
+                    + "enough to be chunked, or to request coalescing.")
+            .defaultValue("false")
+            .allowableValues("true", "false")
+            .addValidator(StandardValidators.BOOLEAN_VALIDATOR)
+            .required(true)
+            .build();
+
+    public static final PropertyDescriptor GROUP_TARGET_SIZE = new PropertyDescriptor.Builder()
+            .name("Group Target Size")
+            .description("The target size of a grouped request to Philter. When grouping, flowfiles are pulled until their total size "
+                    + "reaches this size or the batch size is reached, and groups larger than this are split into several requests. "
+                    + "Flowfiles at least this large are filtered on their own. The string values of JSON content are also sent to Philter "
+                    + "in requests of about this size.")
+            .defaultValue("64 KB")
+            .addValidator(StandardValidators.DATA_SIZE_VALIDATOR)
+            .required(true)
+            .build();
+
+    public static final PropertyDescriptor GROUP_MAX_LINGER = new PropertyDescriptor.Builder()
+            .name("Group Maximum Linger")
+            .description("When grouping, how long to wait for more flowfiles to arrive before filtering a batch that is smaller than "
+                    + "the group target size. A value of 0 filters whatever is queued without waiting.")
+            .defaultValue("0 millis")
+            .addValidator(StandardValidators.TIME_PERIOD_VALIDATOR)
+            .required(true)
+            .build();
+
+    public static final PropertyDescriptor ROUTE_CLEAN_DOCUMENTS = new PropertyDescriptor.Builder()
+            .name("Route Clean Documents")
+            .description("Whether or not flowfiles that Philter did not change are routed unmodified to the clean relationship instead of "
+                    + "creating a redacted copy and routing both the copy and the original. This does not apply when the filtered content "
+                    + "is streamed directly into the redacted flowfile.")
+            .defaultValue("false")
+            .allowableValues("true", "false")
+            .addValidator(StandardValidators.BOOLEAN_VALIDATOR)
+            .required(true)
+            .build();
+
+    public static final PropertyDescriptor EMIT_ORIGINAL = new PropertyDescriptor.Builder()
+            .name("Emit Original")
+            .description("Whether or not the original flowfile is routed to the original relationship alongside a redacted copy. When "
+                    + "disabled, the content of the incoming flowfile is replaced with the filtered text and only that flowfile is routed "
+                    + "to the redacted relationship.")
+            .defaultValue("true")
+            .allowableValues("true", "false")
+            .addValidator(StandardValidators.BOOLEAN_VALIDATOR)
+            .required(true)
+            .build();
+
+    public static final PropertyDescriptor LOCAL_ONLY_FILTER_PROFILES = new PropertyDescriptor.Builder()
+            .name("Local Only Filter Profiles")
+            .description("A comma-separated list of filter profiles that are applied only by finding identifiers with well-known formats "
+                    + "in the processor, without any request to Philter. Use this for filter profiles that only contain the local identifier types. "
+                    + "This does not apply to application/json content.")
+            .required(false)
+            .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor LOCAL_FIRST_FILTER_PROFILES = new PropertyDescriptor.Builder()
+            .name("Local Then Philter Filter Profiles")
+            .description("A comma-separated list of filter profiles for which identifiers with well-known formats are redacted in the "
+                    + "processor before the content is sent to Philter. The content is read into memory instead of being streamed. "
+                    + "This does not apply to application/json content.")
+            .required(false)
+            .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor LOCAL_IDENTIFIER_TYPES = new PropertyDescriptor.Builder()
+            .name("Local Identifier Types")
+            .description("A comma-separated list of the identifier types found in the processor for the local filter profiles. "
+                    + "Supported types are " + StringUtils.join(IdentifierScanner.BUILT_IN_TYPES, ", ") + ".")
+            .defaultValue(StringUtils.join(IdentifierScanner.BUILT_IN_TYPES, ","))
+            .required(false)
             .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor MEDICAL_RECORD_NUMBER_FORMAT = new PropertyDescriptor.Builder()
+            .name("Medical Record Number Format")
+            .description("A regular expression that matches medical record numbers. When set, medical record numbers are also found in "
+                    + "the processor for the local filter profiles. The expression must not match empty text and must use named groups "
+                    + "and \\k<name> instead of numbered backreferences.")
+            .required(false)
+            .addValidator(StandardValidators.REGULAR_EXPRESSION_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor LOCAL_REDACTION_FORMAT = new PropertyDescriptor.Builder()
+            .name("Local Redaction Format")
+            .description("The replacement of each identifier found in the processor. %t is replaced with the identifier type.")
+            .defaultValue("{{{REDACTED-%t}}}")
             .required(true)
+            .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor PRE_SCREEN_CHARACTER_CLASSES = new PropertyDescriptor.Builder()
+            .name("Pre-Screen Character Classes")
+            .description("A comma-separated list of the classes of characters that the sensitive information the filter profiles look for "
+                    + "must contain. Supported classes are " + StringUtils.join(PreScreen.CHARACTER_CLASSES, ", ") + ". For example, SSNs and "
+                    + "phone numbers contain digits and email addresses contain an at-sign. Flowfiles without any of these characters are not "
+                    + "sent to Philter and are routed unchanged, to the clean relationship when clean documents are routed. When not set, "
+                    + "every flowfile is sent to Philter.")
+            .required(false)
+            .addValidator(StandardValidators.NON_EMPTY_VALIDATOR)
             .build();
 
     public static final Relationship REL_REDACTED = new Relationship.Builder()
@@ -99,19 +553,62 @@ public class Philter extends AbstractProcessor {
             .description("The original flowfile will be routed to this transition.")
             .build();
 
+    public static final Relationship REL_CLEAN = new Relationship.Builder()
+            .name("clean")
+            .description("When routing clean documents, flowfiles that contain no sensitive information will be routed to this transition.")
+            .build();
+
     public static final Relationship REL_FAILURE = new Relationship.Builder()
             .name("failure")
             .description("Any flowfiles that fail processing will be routed to this transition.")
             .build();
 
     private List<PropertyDescriptor> descriptors;
-    private Set<Relationship> relationships;
+    private volatile Set<Relationship> relationships;
 
-    private PhilterClient philterClient;
+    private PhilterHttpClient philterHttpClient;
+    private Semaphore outstandingRequests;
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private CircuitBreaker circuitBreaker;
+    private FilterResultCache resultCache;
+    private DiskResultCache diskCache;
+    private DistributedResultCache distributedCache;
+    private RequestCoalescer<FilterResponse> requestCoalescer;
+    private boolean routeCleanDocuments;
+    private boolean emitOriginal;
+    private FilterResultCache valueMemo;
+    private IdentifierScanner identifierScanner;
+    private Set<String> localOnlyFilterProfiles;
+    private Set<String> localFirstFilterProfiles;
+    private PreScreen preScreen;
+    private TextChunker textChunker;
+    private ExecutorService chunkExecutor;
 
     public static final String ATTRIBUTE_CONTEXT = "philter.context";
     public static final String ATTRIBUTE_DOCUMENT_ID = "philter.document.id";
 
+    private static final int TIMEOUT_SEC = 300;
+    private static final int INITIAL_CONCURRENCY = 4;
+    private static final long LINGER_POLL_MS = 5;
+
+    private static final String COUNTER_CACHE_HITS = "Result Cache Hits";
+    private static final String COUNTER_CACHE_MISSES = "Result Cache Misses";
+    private static final String COUNTER_DISK_CACHE_HITS = "Disk Cache Hits";
+    private static final String COUNTER_DISK_CACHE_MISSES = "Disk Cache Misses";
+    private static final String COUNTER_DISTRIBUTED_CACHE_HITS = "Distributed Cache Hits";
+    private static final String COUNTER_DISTRIBUTED_CACHE_MISSES = "Distributed Cache Misses";
+    private static final String COUNTER_COALESCED_REQUESTS = "Coalesced Requests";
+    private static final String COUNTER_GROUPED_DOCUMENTS = "Grouped Documents";
+    private static final String COUNTER_GROUP_FALLBACKS = "Grouped Request Fallbacks";
+    private static final String COUNTER_CLEAN_DOCUMENTS = "Clean Documents";
+    private static final String COUNTER_JSON_VALUES = "JSON Values Filtered";
+    private static final String COUNTER_JSON_REQUESTS = "JSON Value Requests";
+    static final String COUNTER_MEMOIZED_VALUES = "Memoized Values";
+    private static final String COUNTER_LOCAL_IDENTIFIERS = "Local Identifiers";
+    private static final String COUNTER_LOCAL_ONLY_DOCUMENTS = "Local Only Documents";
+    private static final String COUNTER_PRE_SCREEN_SKIPPED = "Pre-Screen Skipped Documents";
+    private static final String COUNTER_PRE_SCREEN_SKIPPED_BYTES = "Pre-Screen Skipped Bytes";
+
     @Override
     protected void init(final ProcessorInitializationContext context) {
 
@@ -119,8 +616,49 @@ public class Philter extends AbstractProcessor {
 
         descriptors.add(FILTER_PROFILE_NAME);
         descriptors.add(PHILTER_API_ENDPOINT);
+        descriptors.add(PHILTER_CLIENT_SERVICE);
+        descriptors.add(LOAD_BALANCING_STRATEGY);
         descriptors.add(DISABLE_CERTIFICATE_VALIDATION);
         descriptors.add(MIME_TYPE);
+        descriptors.add(JSON_PATHS);
+        descriptors.add(VALUE_MEMOIZATION);
+        descriptors.add(VALUE_MEMO_SIZE);
+        descriptors.add(VALUE_MEMO_TTL);
+        descriptors.add(BATCH_SIZE);
+        descriptors.add(ASYNCHRONOUS_REQUESTS);
+        descriptors.add(MAX_OUTSTANDING_REQUESTS);
+        descriptors.add(STREAM_CONTENT);
+        descriptors.add(STREAM_FILTERED_CONTENT);
+        descriptors.add(APPLY_SPANS_LOCALLY);
+        descriptors.add(CHUNK_SIZE);
+        descriptors.add(CHUNK_OVERLAP);
+        descriptors.add(CHUNK_CONCURRENCY);
+        descriptors.add(ADAPTIVE_CONCURRENCY);
+        descriptors.add(MAX_CONCURRENCY);
+        descriptors.add(CIRCUIT_BREAKER);
+        descriptors.add(CIRCUIT_BREAKER_WINDOW);
+        descriptors.add(CIRCUIT_BREAKER_FAILURE_RATE);
+        descriptors.add(CIRCUIT_BREAKER_OPEN_DURATION);
+        descriptors.add(RESULT_CACHE_SIZE);
+        descriptors.add(RESULT_CACHE_MAX_ENTRY_SIZE);
+        descriptors.add(RESULT_CACHE_TTL);
+        descriptors.add(DISK_CACHE_DIRECTORY);
+        descriptors.add(DISK_CACHE_SIZE);
+        descriptors.add(DISK_CACHE_TTL);
+        descriptors.add(DISTRIBUTED_CACHE_SERVICE);
+        descriptors.add(DISTRIBUTED_CACHE_TTL);
+        descriptors.add(COALESCE_REQUESTS);
+        descriptors.add(GROUP_REQUESTS);
+        descriptors.add(GROUP_TARGET_SIZE);
+        descriptors.add(GROUP_MAX_LINGER);
+        descriptors.add(ROUTE_CLEAN_DOCUMENTS);
+        descriptors.add(EMIT_ORIGINAL);
+        descriptors.add(LOCAL_ONLY_FILTER_PROFILES);
+        descriptors.add(LOCAL_FIRST_FILTER_PROFILES);
+        descriptors.add(LOCAL_IDENTIFIER_TYPES);
+        descriptors.add(MEDICAL_RECORD_NUMBER_FORMAT);
+        descriptors.add(LOCAL_REDACTION_FORMAT);
+        descriptors.add(PRE_SCREEN_CHARACTER_CLASSES);
 
         this.descriptors = Collections.unmodifiableList(descriptors);
 
@@ -144,92 +682,1661 @@ public class Philter extends AbstractProcessor {
         return descriptors;
     }
 
+    @Override
+    public void onPropertyModified(final PropertyDescriptor descriptor, final String oldValue, final String newValue) {
+
+        // The clean relationship only exists when it is used so existing flows don't need to connect it.
+        if(descriptor.equals(ROUTE_CLEAN_DOCUMENTS)) {
+            updateRelationship(REL_CLEAN, Boolean.parseBoolean(newValue));
+        }
+
+        // Without the original flowfile there is nothing to route to the original relationship.
+        if(descriptor.equals(EMIT_ORIGINAL)) {
+            updateRelationship(REL_ORIGINAL, newValue == null || Boolean.parseBoolean(newValue));
+        }
+
+    }
+
+    private void updateRelationship(final Relationship relationship, final boolean enabled) {
+
+        final Set<Relationship> relationships = new HashSet<>(this.relationships);
+
+        if(enabled) {
+            relationships.add(relationship);
+        } else {
+            relationships.remove(relationship);
+        }
+
+        this.relationships = Collections.unmodifiableSet(relationships);
+
+    }
+
+    @Override
+    protected Collection<ValidationResult> customValidate(final ValidationContext validationContext) {
+
+        final List<ValidationResult> results = new ArrayList<>();
+
+        final int chunkSize = validationContext.getProperty(CHUNK_SIZE).asInteger();
+        final int chunkOverlap = validationContext.getProperty(CHUNK_OVERLAP).asInteger();
+
+        if(chunkSize > 0 && chunkOverlap >= chunkSize / 2) {
+            results.add(new ValidationResult.Builder()
+                    .subject(CHUNK_OVERLAP.getDisplayName())
+                    .valid(false)
+                    .explanation("the chunk overlap must be less than half of the chunk size")
+                    .build());
+        }
+
+        final String medicalRecordNumberFormat = validationContext.getProperty(MEDICAL_RECORD_NUMBER_FORMAT).getValue();
+        boolean validMedicalRecordNumberFormat = true;
+
+        if(StringUtils.isNotEmpty(medicalRecordNumberFormat)) {
+            try {
+                IdentifierScanner.validateFormat(medicalRecordNumberFormat);
+            } catch (final IllegalArgumentException ex) {
+                validMedicalRecordNumberFormat = false;
+                results.add(new ValidationResult.Builder()
+                        .subject(MEDICAL_RECORD_NUMBER_FORMAT.getDisplayName())
+                        .valid(false)
+                        .explanation(ex.getMessage())
+                        .build());
+            }
+        }
+
+        if(validMedicalRecordNumberFormat) {
+            try {
+                createIdentifierScanner(validationContext);
+            } catch (final IllegalArgumentException ex) {
+                results.add(new ValidationResult.Builder()
+                        .subject(LOCAL_IDENTIFIER_TYPES.getDisplayName())
+                        .valid(false)
+                        .explanation(ex.getMessage())
+                        .build());
+            }
+        }
+
+        if(validationContext.getProperty(PRE_SCREEN_CHARACTER_CLASSES).isSet()) {
+            try {
+                new PreScreen(parseList(validationContext.getProperty(PRE_SCREEN_CHARACTER_CLASSES).getValue()));
+            } catch (final IllegalArgumentException ex) {
+                results.add(new ValidationResult.Builder()
+                        .subject(PRE_SCREEN_CHARACTER_CLASSES.getDisplayName())
+                        .valid(false)
+                        .explanation(ex.getMessage())
+                        .build());
+            }
+        }
+
+        if(MIME_TYPE_JSON.equals(validationContext.getProperty(MIME_TYPE).getValue())) {
+
+            if(!validationContext.getProperty(JSON_PATHS).isSet()) {
+
+                results.add(new ValidationResult.Builder()
+                        .subject(JSON_PATHS.getDisplayName())
+                        .valid(false)
+                        .explanation("JSON paths are required for application/json content")
+                        .build());
+
+            } else if(!validationContext.isExpressionLanguagePresent(validationContext.getProperty(JSON_PATHS).getValue())) {
+
+                try {
+                    StreamingJsonFilter.parsePaths(validationContext.getProperty(JSON_PATHS).getValue());
+                } catch (final IllegalArgumentException ex) {
+                    results.add(new ValidationResult.Builder()
+                            .subject(JSON_PATHS.getDisplayName())
+                            .valid(false)
+                            .explanation(ex.getMessage())
+                            .build());
+                }
+
+            }
+
+        }
+
+        return results;
+
+    }
+
     @OnScheduled
     public void onScheduled(final ProcessContext context) throws Exception {
 
-        final String philterApiEndpoint = context.getProperty(PHILTER_API_ENDPOINT).evaluateAttributeExpressions().getValue();
-        final boolean disableCertificateValidation = context.getProperty(DISABLE_CERTIFICATE_VALIDATION).asBoolean();
+        // NiFi retries a failed start without stopping the processor so close what a failed start left behind.
+        onStopped();
 
-        if(disableCertificateValidation) {
+        final int maxOutstandingRequests = context.getProperty(MAX_OUTSTANDING_REQUESTS).asInteger();
 
-            final OkHttpClient okHttpClient = UnsafeOkHttpClient.getUnsafeOkHttpClient();
+        this.philterHttpClient = createPhilterHttpClient(context, maxOutstandingRequests);
+        this.outstandingRequests = new Semaphore(maxOutstandingRequests);
 
-            this.philterClient = new PhilterClient.PhilterClientBuilder()
-                    .withEndpoint(philterApiEndpoint)
-                    .withOkHttpClientBuilder(okHttpClient.newBuilder())
-                    .withTimeout(300)
-                    .build();
+        if(context.getProperty(ADAPTIVE_CONCURRENCY).asBoolean()) {
+            final int maxConcurrency = context.getProperty(MAX_CONCURRENCY).asInteger();
+            this.concurrencyLimiter = new AdaptiveConcurrencyLimiter(Math.min(INITIAL_CONCURRENCY, maxConcurrency), 1, maxConcurrency);
+            this.philterHttpClient.addRequestListener(concurrencyLimiter);
+        } else {
+            this.concurrencyLimiter = null;
+        }
 
+        if(context.getProperty(CIRCUIT_BREAKER).asBoolean()) {
+            this.circuitBreaker = new CircuitBreaker(context.getProperty(CIRCUIT_BREAKER_WINDOW).asInteger(),
+                    context.getProperty(CIRCUIT_BREAKER_FAILURE_RATE).asInteger(),
+                    context.getProperty(CIRCUIT_BREAKER_OPEN_DURATION).asTimePeriod(TimeUnit.MILLISECONDS));
+            this.philterHttpClient.addRequestListener(circuitBreaker);
         } else {
+            this.circuitBreaker = null;
+        }
 
-            this.philterClient = new PhilterClient.PhilterClientBuilder()
-                    .withEndpoint(philterApiEndpoint)
-                    .withTimeout(300)
-                    .build();
+        final long resultCacheSize = context.getProperty(RESULT_CACHE_SIZE).asDataSize(DataUnit.B).longValue();
 
+        if(resultCacheSize > 0) {
+            this.resultCache = new FilterResultCache(resultCacheSize, context.getProperty(RESULT_CACHE_MAX_ENTRY_SIZE).asDataSize(DataUnit.B).longValue(),
+                    context.getProperty(RESULT_CACHE_TTL).asTimePeriod(TimeUnit.MILLISECONDS));
+        } else {
+            this.resultCache = null;
         }
 
-    }
+        final DistributedMapCacheClient distributedMapCacheClient = context.getProperty(DISTRIBUTED_CACHE_SERVICE).asControllerService(DistributedMapCacheClient.class);
 
-    @Override
-    public void onTrigger(final ProcessContext processContext, final ProcessSession session) throws ProcessException {
+        if(distributedMapCacheClient != null) {
+            this.distributedCache = new DistributedResultCache(distributedMapCacheClient, context.getProperty(RESULT_CACHE_MAX_ENTRY_SIZE).asDataSize(DataUnit.B).longValue(),
+                    context.getProperty(DISTRIBUTED_CACHE_TTL).asTimePeriod(TimeUnit.MILLISECONDS));
+        } else {
+            this.distributedCache = null;
+        }
 
-        FlowFile originalFlowFile = session.get();
+        this.requestCoalescer = context.getProperty(COALESCE_REQUESTS).asBoolean() ? new RequestCoalescer<>() : null;
+        this.routeCleanDocuments = context.getProperty(ROUTE_CLEAN_DOCUMENTS).asBoolean();
+        this.emitOriginal = context.getProperty(EMIT_ORIGINAL).asBoolean();
+        this.valueMemo = createValueMemo(context);
 
-        if (originalFlowFile == null) {
-            return;
+        this.localOnlyFilterProfiles = parseList(context.getProperty(LOCAL_ONLY_FILTER_PROFILES).getValue());
+        this.localFirstFilterProfiles = parseList(context.getProperty(LOCAL_FIRST_FILTER_PROFILES).getValue());
+        this.identifierScanner = createIdentifierScanner(context);
+
+        if(context.getProperty(PRE_SCREEN_CHARACTER_CLASSES).isSet()) {
+            this.preScreen = new PreScreen(parseList(context.getProperty(PRE_SCREEN_CHARACTER_CLASSES).getValue()));
+        } else {
+            this.preScreen = null;
         }
 
-        final ComponentLog logger = getLogger();
+        final int chunkSize = context.getProperty(CHUNK_SIZE).asInteger();
 
-        try {
+        this.textChunker = chunkSize > 0 ? new TextChunker(chunkSize, context.getProperty(CHUNK_OVERLAP).asInteger()) : null;
 
-            // Will hold the content (text we are processing).
-            final AtomicReference<String> content = new AtomicReference<>();
+        // The pool and the disk cache's loader are started last so nothing above can fail after they are running.
+        if(chunkSize > 0) {
+            this.chunkExecutor = Executors.newFixedThreadPool(context.getProperty(CHUNK_CONCURRENCY).asInteger());
+        } else {
+            this.chunkExecutor = null;
+        }
 
-            // Read the content of the flowfile.
-            session.read(originalFlowFile, in -> content.set(IOUtils.toString(in, Charset.defaultCharset())));
+        if(context.getProperty(DISK_CACHE_DIRECTORY).isSet()) {
 
-            // Read properties from the processor.
-            final String filterProfile = processContext.getProperty(FILTER_PROFILE_NAME).evaluateAttributeExpressions().getValue();
-            final String mimeType = processContext.getProperty(MIME_TYPE).evaluateAttributeExpressions().getValue();
+            this.diskCache = new DiskResultCache(new File(context.getProperty(DISK_CACHE_DIRECTORY).evaluateAttributeExpressions().getValue()),
+                    context.getProperty(DISK_CACHE_SIZE).asDataSize(DataUnit.B).longValue(),
+                    context.getProperty(RESULT_CACHE_MAX_ENTRY_SIZE).asDataSize(DataUnit.B).longValue(),
+                    context.getProperty(DISK_CACHE_TTL).asTimePeriod(TimeUnit.MILLISECONDS));
 
-            // Read attributes.
-            final String context = originalFlowFile.getAttribute(ATTRIBUTE_CONTEXT);
-            final String documentId = originalFlowFile.getAttribute(ATTRIBUTE_DOCUMENT_ID);
+            // Load in the background so a large cache doesn't hold up starting the processor. Until it is
+            // loaded the disk cache is skipped and documents are sent to Philter.
+            final DiskResultCache loadingCache = diskCache;
 
-            // Do the filtering by calling Philter with the appropriate MIME type.
-            final FilterResponse filterResponse;
+            final Thread loader = new Thread(() -> {
+                try {
+                    loadingCache.load();
+                } catch (final IOException ex) {
+                    getLogger().error("Unable to load the disk cache.", ex);
+                }
+            }, "Philter Disk Cache Loader");
+
+            loader.setDaemon(true);
+            loader.start();
+
+        } else {
+            this.diskCache = null;
+        }
+
+    }
+
+    /**
+     * Creates the client used to send requests to Philter from the processor's connection properties.
+     * @param context The {@link ProcessContext}.
+     * @param maxRequests The number of requests the processor may have in flight at once.
+     * @return A {@link PhilterHttpClient}.
+     * @throws Exception Thrown if the HTTP client cannot be created.
+     */
+    static PhilterHttpClient createPhilterHttpClient(final ProcessContext context, final int maxRequests) throws Exception {
+
+        final PhilterClientService philterClientService = context.getProperty(PHILTER_CLIENT_SERVICE).asControllerService(PhilterClientService.class);
+
+        final List<String> philterApiEndpoints;
+        final OkHttpClient okHttpClient;
+
+        if(philterClientService != null) {
+
+            // The service's dispatcher is shared with other processors so its limits are left as configured on the service.
+            philterApiEndpoints = philterClientService.getEndpoints();
+            okHttpClient = philterClientService.getOkHttpClient();
+
+        } else {
+
+            philterApiEndpoints = PhilterEndpoints.parse(context.getProperty(PHILTER_API_ENDPOINT).evaluateAttributeExpressions().getValue());
+            final boolean disableCertificateValidation = context.getProperty(DISABLE_CERTIFICATE_VALIDATION).asBoolean();
+
+            if(disableCertificateValidation) {
+
+                okHttpClient = UnsafeOkHttpClient.getUnsafeOkHttpClient();
 
-            if(StringUtils.equalsIgnoreCase("text/plain", mimeType)) {
-                filterResponse = philterClient.filter(context, documentId, filterProfile, content.get());
             } else {
-                // Try to parse it as text/plain but this should never happen.
-                filterResponse = philterClient.filter(context, documentId, filterProfile, content.get());
+
+                okHttpClient = new OkHttpClient.Builder()
+                        .connectTimeout(TIMEOUT_SEC, TimeUnit.SECONDS)
+                        .writeTimeout(TIMEOUT_SEC, TimeUnit.SECONDS)
+                        .readTimeout(TIMEOUT_SEC, TimeUnit.SECONDS)
+                        .connectionPool(new ConnectionPool(PhilterClient.DEFAULT_MAX_IDLE_CONNECTIONS, PhilterClient.DEFAULT_KEEP_ALIVE_DURATION_MS, TimeUnit.MILLISECONDS))
+                        .build();
+
             }
 
-            // Clone the flowfile.
-            FlowFile filteredFlowFile = session.create(originalFlowFile);
+            // OkHttp only allows 5 concurrent requests per host by default which would cap concurrent requests.
+            okHttpClient.dispatcher().setMaxRequests(Math.max(okHttpClient.dispatcher().getMaxRequests(), maxRequests));
+            okHttpClient.dispatcher().setMaxRequestsPerHost(Math.max(okHttpClient.dispatcher().getMaxRequestsPerHost(), maxRequests));
+
+        }
 
-            // Write the filtered text back to the flowfile.
-            filteredFlowFile = session.write(filteredFlowFile, out -> out.write(filterResponse.getFilteredText().getBytes()));
+        // The SDK's PhilterClient is bound to a single endpoint so all requests go through PhilterHttpClient.
+        final PhilterEndpoints.Strategy strategy = PhilterEndpoints.Strategy.valueOf(context.getProperty(LOAD_BALANCING_STRATEGY).getValue());
 
-            // Write the document ID and context as attributes.
-            filteredFlowFile = session.putAttribute(filteredFlowFile, ATTRIBUTE_DOCUMENT_ID, filterResponse.getDocumentId());
-            filteredFlowFile = session.putAttribute(filteredFlowFile, ATTRIBUTE_CONTEXT, context);
+        return new PhilterHttpClient(okHttpClient, new PhilterEndpoints(philterApiEndpoints, strategy));
 
-            // All done.
-            session.transfer(filteredFlowFile, REL_REDACTED);
-            session.transfer(originalFlowFile, REL_ORIGINAL);
+    }
+
+    /**
+     * Creates the memo shared by every flowfile when values are memoized across flowfiles.
+     * @param context The {@link ProcessContext}.
+     * @return The memo, or <code>null</code> if values are not memoized across flowfiles.
+     */
+    static FilterResultCache createValueMemo(final ProcessContext context) {
+
+        if(!MEMOIZE_ACROSS_FLOWFILES.getValue().equals(context.getProperty(VALUE_MEMOIZATION).getValue())) {
+            return null;
+        }
+
+        final long size = context.getProperty(VALUE_MEMO_SIZE).asDataSize(DataUnit.B).longValue();
+
+        return new FilterResultCache(size, size, context.getProperty(VALUE_MEMO_TTL).asTimePeriod(TimeUnit.MILLISECONDS));
+
+    }
+
+    /**
+     * Gets the memo to filter the values of a single flowfile with.
+     * @param context The {@link ProcessContext}.
+     * @param sharedMemo The memo shared by every flowfile.
+     * @return The memo, or <code>null</code> if values are not memoized.
+     */
+    static FilterResultCache getValueMemo(final ProcessContext context, final FilterResultCache sharedMemo) {
+
+        final String memoization = context.getProperty(VALUE_MEMOIZATION).getValue();
+
+        if(MEMOIZE_ACROSS_FLOWFILES.getValue().equals(memoization)) {
+            return sharedMemo;
+        } else if(MEMOIZE_PER_FLOWFILE.getValue().equals(memoization)) {
+            final long size = context.getProperty(VALUE_MEMO_SIZE).asDataSize(DataUnit.B).longValue();
+            return new FilterResultCache(size, size, Long.MAX_VALUE);
+        }
+
+        return null;
+
+    }
+
+    @OnStopped
+    public void onStopped() {
+
+        if(chunkExecutor != null) {
+            chunkExecutor.shutdownNow();
+            chunkExecutor = null;
+        }
+
+        if(diskCache != null) {
+
+            // Saves the index so the cache is warm when the processor is started again.
+            try {
+                diskCache.close();
+            } catch (final IOException ex) {
+                getLogger().error("Unable to save the disk cache.", ex);
+            }
+
+            diskCache = null;
+
+        }
+
+    }
+
+    @Override
+    public void onTrigger(final ProcessContext processContext, final ProcessSession session) throws ProcessException {
+
+        // Flowfiles for a local-only filter profile never reach Philter so they are filtered whatever state Philter is in.
+        final boolean localOnly = isLocalOnly(processContext);
+
+        // Leave flowfiles on the queue while Philter is saturated instead of sending it more requests.
+        if(!localOnly && concurrencyLimiter != null && concurrencyLimiter.getInFlight() >= concurrencyLimiter.getLimit()) {
+            processContext.yield();
+            return;
+        }
+
+        final CircuitBreaker.Permission permission = localOnly || circuitBreaker == null
+                ? CircuitBreaker.Permission.PERMITTED : circuitBreaker.tryAcquire();
+
+        // Leave flowfiles on the queue while Philter is unhealthy instead of waiting for each one to time out.
+        if(permission == CircuitBreaker.Permission.DENIED) {
+            processContext.yield();
+            return;
+        }
+
+        // Only a single flowfile is sent while probing to see if Philter has recovered.
+        final int batchSize = permission == CircuitBreaker.Permission.PROBE ? 1 : processContext.getProperty(BATCH_SIZE).asInteger();
+
+        // JSON content is copied around its values as they are filtered so it can't be sent asynchronously or grouped.
+        final boolean json = isJson(processContext);
+        final boolean asynchronous = processContext.getProperty(ASYNCHRONOUS_REQUESTS).asBoolean() && !json;
+        final boolean groupRequests = processContext.getProperty(GROUP_REQUESTS).asBoolean() && !asynchronous && !json;
+
+        final List<FlowFile> pulledFlowFiles = groupRequests ? getGroupBatch(processContext, session, batchSize) : session.get(batchSize);
+
+        // Flowfiles that can't contain anything the filter profiles look for don't need to be sent to Philter.
+        final List<FlowFile> flowFiles = preScreen == null ? pulledFlowFiles : preScreen(session, pulledFlowFiles);
+
+        if (flowFiles.isEmpty()) {
+
+            if(permission == CircuitBreaker.Permission.PROBE) {
+                circuitBreaker.cancelProbe();
+            }
+
+            return;
+
+        }
+
+        if(asynchronous) {
+
+            filterFlowFilesAsync(processContext, session, flowFiles, permission);
+
+        } else if(groupRequests) {
+
+            filterFlowFilesGrouped(processContext, session, flowFiles, permission);
+
+        } else {
+
+            // The session is committed once for the whole batch when this method returns.
+            for(int i = 0; i < flowFiles.size(); i++) {
+
+                if(isLocalOnly(processContext, flowFiles.get(i))) {
+                    filterFlowFile(processContext, session, flowFiles.get(i));
+                    continue;
+                }
+
+                if(isCircuitOpen(permission) || !tryAcquireConcurrency()) {
+                    session.transfer(flowFiles.subList(i, flowFiles.size()));
+                    processContext.yield();
+                    break;
+                }
+
+                try {
+                    filterFlowFile(processContext, session, flowFiles.get(i));
+                } finally {
+                    releaseConcurrency();
+                }
+
+            }
+
+        }
+
+    }
+
+    private void filterFlowFile(final ProcessContext processContext, final ProcessSession session, final FlowFile originalFlowFile) {
+
+        try {
+
+            // Read properties from the processor.
+            final String filterProfile = processContext.getProperty(FILTER_PROFILE_NAME).evaluateAttributeExpressions(originalFlowFile).getValue();
+            final String mimeType = processContext.getProperty(MIME_TYPE).evaluateAttributeExpressions().getValue();
+
+            // Read attributes.
+            final String context = originalFlowFile.getAttribute(ATTRIBUTE_CONTEXT);
+            final String documentId = originalFlowFile.getAttribute(ATTRIBUTE_DOCUMENT_ID);
+
+            final boolean streamContent = processContext.getProperty(STREAM_CONTENT).asBoolean();
+
+            if(isJson(processContext)) {
+                filterJson(processContext, session, originalFlowFile, context, documentId, filterProfile);
+                return;
+            }
+
+            // Profiles that only contain identifiers with well-known formats don't need Philter at all.
+            if(localOnlyFilterProfiles.contains(filterProfile)) {
+                final String content = readContent(session, originalFlowFile);
+                transferFiltered(session, originalFlowFile, context, new FilterResponse(redactLocally(session, content), context, documentId));
+                session.adjustCounter(COUNTER_LOCAL_ONLY_DOCUMENTS, 1, false);
+                return;
+            }
+
+            // Documents that have been filtered before don't need to be sent to Philter again.
+            final String cacheKey = !needsCacheKey() ? null : getCacheKey(session, originalFlowFile, filterProfile, context, mimeType);
+
+            if(isCaching()) {
+
+                final String filteredText = getCachedResult(session, cacheKey);
+
+                if(filteredText != null) {
+                    transferFiltered(session, originalFlowFile, context, new FilterResponse(filteredText, context, documentId));
+                    return;
+                }
+
+            }
+
+            // Large documents are chunked which requires their text in memory so chunking takes precedence over streaming.
+            final boolean chunk = mayNeedChunking(processContext, originalFlowFile);
+
+            // Identifiers are redacted before the content is sent so the content has to be in memory.
+            if(localFirstFilterProfiles.contains(filterProfile)) {
+
+                final String content = redactLocally(session, readContent(session, originalFlowFile));
+
+                final FilterResponse filterResponse = chunk ? filterChunked(content, context, documentId, filterProfile)
+                        : philterHttpClient.filter(context, documentId, filterProfile, content);
+
+                putCachedResult(cacheKey, filterResponse);
+                transferFiltered(session, originalFlowFile, context, filterResponse);
+
+                return;
+
+            }
+
+            if(!chunk && processContext.getProperty(APPLY_SPANS_LOCALLY).asBoolean()) {
+                filterSpansLocally(session, originalFlowFile, context, documentId, filterProfile);
+                return;
+            }
+
+            if(!chunk && processContext.getProperty(STREAM_FILTERED_CONTENT).asBoolean()) {
+                filterStreamingResponse(session, originalFlowFile, context, documentId, filterProfile, streamContent);
+                return;
+            }
+
+            final FilterResponse filterResponse;
+
+            if(requestCoalescer != null) {
+
+                // Identical documents being filtered by other threads at the same time share a single request.
+                final AtomicBoolean sent = new AtomicBoolean();
+
+                final FilterResponse sharedResponse = requestCoalescer.execute(cacheKey, () -> {
+                    sent.set(true);
+                    return filter(session, originalFlowFile, context, documentId, filterProfile, mimeType, chunk, streamContent);
+                });
+
+                if(sent.get()) {
+                    filterResponse = sharedResponse;
+                    putCachedResult(cacheKey, filterResponse);
+                } else {
+                    session.adjustCounter(COUNTER_COALESCED_REQUESTS, 1, false);
+                    filterResponse = new FilterResponse(sharedResponse.getFilteredText(), context, documentId);
+                }
+
+            } else {
+
+                filterResponse = filter(session, originalFlowFile, context, documentId, filterProfile, mimeType, chunk, streamContent);
+                putCachedResult(cacheKey, filterResponse);
+
+            }
+
+            transferFiltered(session, originalFlowFile, context, filterResponse);
+
+        } catch (final IOException | ClientException | UnauthorizedException | ServiceUnavailableException ex) {
+
+            // Philter rejecting a document only fails that flowfile rather than the whole batch.
+            transferFailure(session, originalFlowFile, ex);
+
+        }
+
+    }
+
+    private List<FlowFile> preScreen(final ProcessSession session, final List<FlowFile> flowFiles) {
+
+        final List<FlowFile> candidates = new ArrayList<>(flowFiles.size());
+
+        for(final FlowFile flowFile : flowFiles) {
+
+            final AtomicBoolean hasCandidates = new AtomicBoolean();
+
+            session.read(flowFile, in -> hasCandidates.set(preScreen.hasCandidates(in)));
+
+            if(hasCandidates.get()) {
+                candidates.add(flowFile);
+                continue;
+            }
+
+            session.adjustCounter(COUNTER_PRE_SCREEN_SKIPPED, 1, false);
+            session.adjustCounter(COUNTER_PRE_SCREEN_SKIPPED_BYTES, flowFile.getSize(), false);
+
+            final String context = flowFile.getAttribute(ATTRIBUTE_CONTEXT);
+            final String documentId = flowFile.getAttribute(ATTRIBUTE_DOCUMENT_ID);
+
+            if(routeCleanDocuments) {
+                session.adjustCounter(COUNTER_CLEAN_DOCUMENTS, 1, false);
+                session.transfer(flowFile, REL_CLEAN);
+            } else {
+                // A clone shares the original content so nothing is written.
+                transferRedacted(session, flowFile, emitOriginal ? session.clone(flowFile) : flowFile, context, documentId);
+            }
+
+        }
+
+        return candidates;
+
+    }
+
+    private List<FlowFile> getGroupBatch(final ProcessContext processContext, final ProcessSession session, final int batchSize) {
+
+        final long targetSize = processContext.getProperty(GROUP_TARGET_SIZE).asDataSize(DataUnit.B).longValue();
+        final long deadline = System.nanoTime() + processContext.getProperty(GROUP_MAX_LINGER).asTimePeriod(TimeUnit.NANOSECONDS);
+
+        final GroupBatchFilter groupBatchFilter = new GroupBatchFilter(batchSize, targetSize);
+        final List<FlowFile> flowFiles = new ArrayList<>(session.get(groupBatchFilter));
+
+        // Linger for more small flowfiles so they can share a request, but don't hold up an empty queue.
+        while(!flowFiles.isEmpty() && !groupBatchFilter.isFull() && System.nanoTime() < deadline) {
+
+            try {
+                Thread.sleep(Math.min(LINGER_POLL_MS, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()) + 1));
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+
+            flowFiles.addAll(session.get(groupBatchFilter));
+
+        }
+
+        return flowFiles;
+
+    }
+
+    private void filterFlowFilesGrouped(final ProcessContext processContext, final ProcessSession session, final List<FlowFile> flowFiles,
+                                        final CircuitBreaker.Permission permission) {
+
+        // Group the flowfiles by filter profile and context, keeping the order they were pulled in.
+        final Map<List<String>, List<FlowFile>> groups = new LinkedHashMap<>();
+
+        for(final FlowFile flowFile : flowFiles) {
+
+            final String filterProfile = processContext.getProperty(FILTER_PROFILE_NAME).evaluateAttributeExpressions(flowFile).getValue();
+            final String context = flowFile.getAttribute(ATTRIBUTE_CONTEXT);
+
+            groups.computeIfAbsent(Arrays.asList(filterProfile, context), key -> new ArrayList<>()).add(flowFile);
+
+        }
+
+        final List<Map.Entry<List<String>, List<FlowFile>>> entries = new ArrayList<>(groups.entrySet());
+
+        // The session is committed once for the whole batch when this method returns.
+        for(int i = 0; i < entries.size(); i++) {
+
+            if(localOnlyFilterProfiles.contains(entries.get(i).getKey().get(0))) {
+                filterGroup(processContext, session, entries.get(i).getKey().get(0), entries.get(i).getKey().get(1), entries.get(i).getValue());
+                continue;
+            }
+
+            if(isCircuitOpen(permission) || !tryAcquireConcurrency()) {
+
+                for(int j = i; j < entries.size(); j++) {
+                    session.transfer(entries.get(j).getValue());
+                }
+
+                processContext.yield();
+                break;
+
+            }
+
+            try {
+                filterGroup(processContext, session, entries.get(i).getKey().get(0), entries.get(i).getKey().get(1), entries.get(i).getValue());
+            } finally {
+                releaseConcurrency();
+            }
+
+        }
+
+    }
+
+    private void filterGroup(final ProcessContext processContext, final ProcessSession session, final String filterProfile,
+                             final String context, final List<FlowFile> flowFiles) {
+
+        final String mimeType = processContext.getProperty(MIME_TYPE).evaluateAttributeExpressions().getValue();
+
+        final List<FlowFile> pending = new ArrayList<>(flowFiles.size());
+        final List<String> contents = new ArrayList<>(flowFiles.size());
+        final List<String> cacheKeys = new ArrayList<>(flowFiles.size());
+
+        for(final FlowFile flowFile : flowFiles) {
+
+            // Documents large enough to be chunked and documents with identifiers found in the processor are filtered on their own.
+            if(isLocal(filterProfile) || mayNeedChunking(processContext, flowFile)) {
+                filterFlowFile(processContext, session, flowFile);
+                continue;
+            }
+
+            final String cacheKey = isCaching() ? getCacheKey(session, flowFile, filterProfile, context, mimeType) : null;
+
+            if(cacheKey != null) {
+
+                final String filteredText = getCachedResult(session, cacheKey);
+
+                if(filteredText != null) {
+                    transferFiltered(session, flowFile, context, new FilterResponse(filteredText, context, flowFile.getAttribute(ATTRIBUTE_DOCUMENT_ID)));
+                    continue;
+                }
+
+            }
+
+            pending.add(flowFile);
+            contents.add(readContent(session, flowFile));
+            cacheKeys.add(cacheKey);
+
+        }
+
+        final long targetSize = processContext.getProperty(GROUP_TARGET_SIZE).asDataSize(DataUnit.B).longValue();
+
+        int start = 0;
+        long size = 0;
+
+        // Split the group into requests of at most the target size. Flowfiles at least that large end up in a request of their own.
+        for(int i = 0; i < pending.size(); i++) {
+
+            if(i > start && size + pending.get(i).getSize() > targetSize) {
+                filterDocuments(session, filterProfile, context, pending.subList(start, i), contents.subList(start, i), cacheKeys.subList(start, i));
+                start = i;
+                size = 0;
+            }
+
+            size += pending.get(i).getSize();
+
+        }
+
+        if(start < pending.size()) {
+            filterDocuments(session, filterProfile, context, pending.subList(start, pending.size()),
+                    contents.subList(start, pending.size()), cacheKeys.subList(start, pending.size()));
+        }
+
+    }
+
+    private void filterDocuments(final ProcessSession session, final String filterProfile, final String context,
+                                 final List<FlowFile> pending, final List<String> contents, final List<String> cacheKeys) {
+
+        List<List<Span>> spans = null;
+
+        if(pending.size() > 1) {
+
+            // Philter's explain API returns the spans it applied so they can be split back out to each document.
+            final DocumentBatch documentBatch = new DocumentBatch(contents);
+
+            try {
+
+                final ExplainResponse explainResponse = philterHttpClient.explain(context, null, filterProfile, documentBatch.getText());
+
+                spans = documentBatch.split(SpanSplicer.getAppliedSpans(explainResponse));
+
+                if(spans == null) {
+                    session.adjustCounter(COUNTER_GROUP_FALLBACKS, 1, false);
+                } else {
+                    session.adjustCounter(COUNTER_GROUPED_DOCUMENTS, pending.size(), false);
+                }
+
+            } catch (final IOException | ClientException | UnauthorizedException | ServiceUnavailableException ex) {
+
+                for(final FlowFile flowFile : pending) {
+                    transferFailure(session, flowFile, ex);
+                }
+
+                return;
+
+            }
+
+        }
+
+        for(int i = 0; i < pending.size(); i++) {
+
+            final FlowFile flowFile = pending.get(i);
+            final String documentId = flowFile.getAttribute(ATTRIBUTE_DOCUMENT_ID);
+
+            try {
+
+                final FilterResponse filterResponse;
+
+                if(spans != null) {
+                    // The ID Philter assigns to the joined text belongs to no single flowfile, so its spans and offsets
+                    // don't describe any of them. A flowfile without its own ID is left without one.
+                    filterResponse = new FilterResponse(SpanSplicer.splice(contents.get(i), SpanSplicer.resolveOverlaps(spans.get(i))),
+                            context, documentId);
+                } else {
+                    filterResponse = philterHttpClient.filter(context, documentId, filterProfile, contents.get(i));
+                }
+
+                putCachedResult(cacheKeys.get(i), filterResponse);
+
+                transferFiltered(session, flowFile, context, filterResponse);
+
+            } catch (final IOException | ClientException | UnauthorizedException | ServiceUnavailableException ex) {
+
+                transferFailure(session, flowFile, ex);
+
+            }
+
+        }
+
+    }
+
+    private FilterResponse filter(final ProcessSession session, final FlowFile originalFlowFile, final String context, final String documentId,
+                                  final String filterProfile, final String mimeType, final boolean chunk, final boolean streamContent) throws IOException {
+
+        // Do the filtering by calling Philter with the appropriate MIME type.
+        if(chunk) {
+
+            return filterChunked(readContent(session, originalFlowFile), context, documentId, filterProfile);
+
+        } else if(streamContent) {
+
+            return filterStreaming(session, originalFlowFile, context, documentId, filterProfile);
+
+        } else {
+
+            // Read the content of the flowfile.
+            final String content = readContent(session, originalFlowFile);
+
+            if(StringUtils.equalsIgnoreCase("text/plain", mimeType)) {
+                return philterHttpClient.filter(context, documentId, filterProfile, content);
+            } else {
+                // Try to parse it as text/plain but this should never happen.
+                return philterHttpClient.filter(context, documentId, filterProfile, content);
+            }
+
+        }
+
+    }
+
+    private boolean mayNeedChunking(final ProcessContext processContext, final FlowFile flowFile) {
+
+        // UTF-8 content never has more characters than bytes so only a flowfile with more bytes than
+        // the chunk size can have more characters than it. The characters are counted once it is read.
+        return textChunker != null && flowFile.getSize() > processContext.getProperty(CHUNK_SIZE).asInteger();
+
+    }
+
+    private FilterResponse filterChunked(final String content, final String context, final String documentId,
+                                         final String filterProfile) throws IOException {
+
+        final List<TextChunker.TextChunk> chunks = textChunker.chunk(content);
+
+        // The chunk size is in characters, which the flowfile's size in bytes could only bound.
+        if(chunks.size() == 1) {
+            return philterHttpClient.filter(context, documentId, filterProfile, content);
+        }
+        final List<Future<ExplainResponse>> explainResponses = new ArrayList<>(chunks.size());
+
+        // Philter's explain API returns the spans it applied with their offsets in the chunk.
+        for(final TextChunker.TextChunk chunk : chunks) {
+            explainResponses.add(chunkExecutor.submit(() -> philterHttpClient.explain(context, documentId, filterProfile, chunk.getText())));
+        }
+
+        final List<Span> spans = new ArrayList<>();
+        String assignedDocumentId = documentId;
+
+        try {
+
+            for(int i = 0; i < chunks.size(); i++) {
+
+                final ExplainResponse explainResponse = explainResponses.get(i).get();
+
+                if(assignedDocumentId == null) {
+                    assignedDocumentId = explainResponse.getDocumentId();
+                }
+
+                for(final Span span : SpanSplicer.getAppliedSpans(explainResponse)) {
+                    spans.add(SpanSplicer.shift(span, chunks.get(i).getOffset()));
+                }
+
+            }
+
+        } catch (final InterruptedException ex) {
+
+            Thread.currentThread().interrupt();
+            throw new ProcessException("Interrupted while waiting for chunks to be filtered by Philter.", ex);
+
+        } catch (final ExecutionException ex) {
+
+            if(ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            } else if(ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+
+            throw new ProcessException("Unable to filter chunk with Philter.", ex.getCause());
+
+        } finally {
+
+            // No reason to let the remaining chunks run if one of them failed.
+            for(final Future<ExplainResponse> explainResponse : explainResponses) {
+                explainResponse.cancel(true);
+            }
+
+        }
+
+        // Spans in the overlap between two chunks are found by both chunks.
+        final String filteredText = SpanSplicer.splice(content, SpanSplicer.resolveOverlaps(spans));
+
+        return new FilterResponse(filteredText, context, assignedDocumentId);
+
+    }
+
+    private String redactLocally(final ProcessSession session, final String content) {
+
+        final List<Span> spans = identifierScanner.scan(content);
+
+        session.adjustCounter(COUNTER_LOCAL_IDENTIFIERS, spans.size(), false);
+
+        return SpanSplicer.splice(content, spans);
+
+    }
+
+    private boolean isLocalOnly(final ProcessContext processContext) {
+
+        // Only known before the flowfiles are pulled when the filter profile doesn't depend on their attributes.
+        final PropertyValue filterProfile = processContext.getProperty(FILTER_PROFILE_NAME);
+
+        return !isJson(processContext) && !filterProfile.isExpressionLanguagePresent() && localOnlyFilterProfiles.contains(filterProfile.getValue());
+
+    }
+
+    private boolean isLocalOnly(final ProcessContext processContext, final FlowFile flowFile) {
+
+        return !isJson(processContext)
+                && localOnlyFilterProfiles.contains(processContext.getProperty(FILTER_PROFILE_NAME).evaluateAttributeExpressions(flowFile).getValue());
+
+    }
+
+    private boolean isLocal(final String filterProfile) {
+        return localOnlyFilterProfiles.contains(filterProfile) || localFirstFilterProfiles.contains(filterProfile);
+    }
+
+    private static IdentifierScanner createIdentifierScanner(final PropertyContext context) {
+
+        final String medicalRecordNumberFormat = context.getProperty(MEDICAL_RECORD_NUMBER_FORMAT).getValue();
+
+        return new IdentifierScanner(parseList(context.getProperty(LOCAL_IDENTIFIER_TYPES).getValue()),
+                StringUtils.isEmpty(medicalRecordNumberFormat) ? null : medicalRecordNumberFormat,
+                context.getProperty(LOCAL_REDACTION_FORMAT).getValue());
+
+    }
+
+    private static Set<String> parseList(final String value) {
+
+        final Set<String> values = new LinkedHashSet<>();
+
+        if(value != null) {
+            for(final String item : value.split(",")) {
+                if(!item.trim().isEmpty()) {
+                    values.add(item.trim());
+                }
+            }
+        }
+
+        return values;
+
+    }
+
+    private static boolean isJson(final ProcessContext processContext) {
+        return MIME_TYPE_JSON.equals(processContext.getProperty(MIME_TYPE).getValue());
+    }
+
+    private FilterResponse filterStreaming(final ProcessSession session, final FlowFile flowFile, final String context,
+                                           final String documentId, final String filterProfile) throws IOException {
+
+        final AtomicReference<FilterResponse> filterResponse = new AtomicReference<>();
+        final AtomicReference<IOException> exception = new AtomicReference<>();
+
+        // The request body is written from the content stream while the stream is open.
+        session.read(flowFile, in -> {
+
+            try {
+                filterResponse.set(philterHttpClient.filter(context, documentId, filterProfile,
+                        new InputStreamRequestBody(PhilterHttpClient.TEXT_PLAIN, in, flowFile.getSize())));
+            } catch (final IOException ex) {
+                // Keep the session from wrapping a failed request as a content access failure.
+                exception.set(ex);
+            }
+
+        });
+
+        if(exception.get() != null) {
+            throw exception.get();
+        }
+
+        return filterResponse.get();
+
+    }
+
+    private void filterFlowFilesAsync(final ProcessContext processContext, final ProcessSession session, final List<FlowFile> flowFiles,
+                                      final CircuitBreaker.Permission permission) {
+
+        // Responses are handed back to this thread because the session must not be used from OkHttp's threads.
+        final BlockingQueue<CompletedRequest> completedRequests = new LinkedBlockingQueue<>();
+        int pendingRequests = 0;
+
+        try {
+
+            for(int i = 0; i < flowFiles.size(); i++) {
+
+                final FlowFile originalFlowFile = flowFiles.get(i);
+
+                final String filterProfile = processContext.getProperty(FILTER_PROFILE_NAME).evaluateAttributeExpressions(originalFlowFile).getValue();
+                final String context = originalFlowFile.getAttribute(ATTRIBUTE_CONTEXT);
+                final String documentId = originalFlowFile.getAttribute(ATTRIBUTE_DOCUMENT_ID);
+
+                // Stop sending the batch as soon as the circuit breaker opens.
+                if(!localOnlyFilterProfiles.contains(filterProfile) && isCircuitOpen(permission)) {
+                    session.transfer(flowFiles.subList(i, flowFiles.size()));
+                    processContext.yield();
+                    break;
+                }
+
+                // Identifiers found in the processor are redacted synchronously.
+                if(isLocal(filterProfile)) {
+                    filterFlowFile(processContext, session, originalFlowFile);
+                    continue;
+                }
+
+                // Documents that have been filtered before don't need to be sent to Philter again.
+                final String cacheKey = !needsCacheKey() ? null
+                        : getCacheKey(session, originalFlowFile, filterProfile, context, processContext.getProperty(MIME_TYPE).getValue());
+
+                if(isCaching()) {
+
+                    final String filteredText = getCachedResult(session, cacheKey);
+
+                    if(filteredText != null) {
+                        transferFiltered(session, originalFlowFile, context, new FilterResponse(filteredText, context, documentId));
+                        continue;
+                    }
+
+                }
+
+                // Read before taking any permits so a read that fails can't leave them taken.
+                final String content = readContent(session, originalFlowFile);
+
+                // Wait for room in the window, transferring whatever has completed in the meantime.
+                while(!outstandingRequests.tryAcquire(10, TimeUnit.MILLISECONDS)) {
+                    pendingRequests -= transferCompleted(session, completedRequests);
+                }
+
+                // Wait for our own requests to make room under the adaptive limit. If none of them are
+                // pending the limit is held by other tasks, so give the rest of the batch back to the queue.
+                boolean acquired = true;
+
+                while(!tryAcquireConcurrency()) {
+
+                    if(pendingRequests == 0) {
+                        acquired = false;
+                        break;
+                    }
+
+                    transferCompleted(session, completedRequests.take());
+                    pendingRequests--;
+
+                }
+
+                if(!acquired) {
+                    outstandingRequests.release();
+                    session.transfer(flowFiles.subList(i, flowFiles.size()));
+                    processContext.yield();
+                    break;
+                }
+
+                final CompletableFuture<FilterResponse> request;
+                final boolean coalesced;
+
+                try {
+
+                    if(requestCoalescer != null) {
+
+                        // Identical documents already in flight, from this batch or another thread, share a single request.
+                        final AtomicBoolean sent = new AtomicBoolean();
+
+                        request = requestCoalescer.executeAsync(cacheKey, () -> {
+                            sent.set(true);
+                            return philterHttpClient.filterAsync(context, documentId, filterProfile, content);
+                        });
+
+                        coalesced = !sent.get();
+
+                        if(coalesced) {
+                            session.adjustCounter(COUNTER_COALESCED_REQUESTS, 1, false);
+                        }
+
+                    } else {
+
+                        request = philterHttpClient.filterAsync(context, documentId, filterProfile, content);
+                        coalesced = false;
+
+                    }
+
+                } catch (final RuntimeException ex) {
+
+                    // The request never started so its permits are given back here instead of when it completes.
+                    releaseConcurrency();
+                    outstandingRequests.release();
+
+                    transferFailure(session, originalFlowFile, ex);
+                    continue;
+
+                }
+
+                request.whenComplete((filterResponse, throwable) -> {
+
+                    releaseConcurrency();
+                    outstandingRequests.release();
+
+                    // Only the flowfile whose request was sent caches the result and keeps the document ID Philter assigned.
+                    if(coalesced) {
+                        completedRequests.add(new CompletedRequest(originalFlowFile, context, null,
+                                filterResponse == null ? null : new FilterResponse(filterResponse.getFilteredText(), context, documentId), throwable));
+                    } else {
+                        completedRequests.add(new CompletedRequest(originalFlowFile, context, cacheKey, filterResponse, throwable));
+                    }
+
+                });
+
+                pendingRequests++;
+                pendingRequests -= transferCompleted(session, completedRequests);
+
+            }
+
+            // The session can only be committed once every flowfile in it is transferred so this thread waits for the rest of the batch.
+            while(pendingRequests > 0) {
+                transferCompleted(session, completedRequests.take());
+                pendingRequests--;
+            }
+
+        } catch (final InterruptedException ex) {
+
+            Thread.currentThread().interrupt();
+            throw new ProcessException("Interrupted while waiting for responses from Philter.", ex);
+
+        }
+
+    }
+
+    private boolean isCircuitOpen(final CircuitBreaker.Permission permission) {
+
+        // Only the probe is sent until the breaker closes again so nothing else is mistaken for it.
+        return circuitBreaker != null && permission != CircuitBreaker.Permission.PROBE && circuitBreaker.getState() != CircuitBreaker.State.CLOSED;
+
+    }
+
+    private boolean tryAcquireConcurrency() {
+        return concurrencyLimiter == null || concurrencyLimiter.tryAcquire();
+    }
+
+    private void releaseConcurrency() {
+        if(concurrencyLimiter != null) {
+            concurrencyLimiter.release();
+        }
+    }
+
+    private int transferCompleted(final ProcessSession session, final BlockingQueue<CompletedRequest> completedRequests) {
+
+        int transferred = 0;
+        CompletedRequest completedRequest;
+
+        while((completedRequest = completedRequests.poll()) != null) {
+            transferCompleted(session, completedRequest);
+            transferred++;
+        }
+
+        return transferred;
+
+    }
+
+    private void transferCompleted(final ProcessSession session, final CompletedRequest completedRequest) {
+
+        final Throwable throwable = completedRequest.throwable instanceof CompletionException
+                ? completedRequest.throwable.getCause() : completedRequest.throwable;
+
+        // A failed request, including one Philter rejected, only fails its own flowfile so the
+        // responses that already arrived for the rest of the batch are kept.
+        if(throwable == null) {
+            putCachedResult(completedRequest.cacheKey, completedRequest.filterResponse);
+            transferFiltered(session, completedRequest.flowFile, completedRequest.context, completedRequest.filterResponse);
+        } else {
+            transferFailure(session, completedRequest.flowFile, throwable);
+        }
+
+    }
+
+    private void filterStreamingResponse(final ProcessSession session, final FlowFile originalFlowFile, final String context,
+                                         final String documentId, final String filterProfile, final boolean streamContent) throws IOException {
+
+        if(!emitOriginal) {
+            filterStreamingResponseInPlace(session, originalFlowFile, context, documentId, filterProfile, streamContent);
+            return;
+        }
+
+        final AtomicReference<String> assignedDocumentId = new AtomicReference<>();
+        final AtomicReference<IOException> exception = new AtomicReference<>();
+
+        // Clone the flowfile.
+        FlowFile filteredFlowFile = session.create(originalFlowFile);
+
+        try {
+
+            // Pipe the filtered text from the response straight into the cloned flowfile.
+            filteredFlowFile = session.write(filteredFlowFile, out -> {
+
+                if(streamContent) {
+
+                    session.read(originalFlowFile, in -> {
+
+                        try {
+                            assignedDocumentId.set(philterHttpClient.filter(context, documentId, filterProfile,
+                                    new InputStreamRequestBody(PhilterHttpClient.TEXT_PLAIN, in, originalFlowFile.getSize()), out));
+                        } catch (final IOException ex) {
+                            exception.set(ex);
+                        }
+
+                    });
+
+                } else {
+
+                    final RequestBody body = RequestBody.create(readContent(session, originalFlowFile), PhilterHttpClient.TEXT_PLAIN);
+
+                    try {
+                        assignedDocumentId.set(philterHttpClient.filter(context, documentId, filterProfile, body, out));
+                    } catch (final IOException ex) {
+                        exception.set(ex);
+                    }
+
+                }
+
+            });
+
+        } catch (final ClientException | UnauthorizedException | ServiceUnavailableException ex) {
+
+            session.remove(filteredFlowFile);
+            throw ex;
+
+        }
+
+        if(exception.get() != null) {
+            session.remove(filteredFlowFile);
+            throw exception.get();
+        }
+
+        transferRedacted(session, originalFlowFile, filteredFlowFile, context, assignedDocumentId.get());
+
+    }
+
+    private void filterStreamingResponseInPlace(final ProcessSession session, final FlowFile originalFlowFile, final String context,
+                                                final String documentId, final String filterProfile, final boolean streamContent) throws IOException {
+
+        final AtomicReference<String> assignedDocumentId = new AtomicReference<>();
+        final AtomicReference<IOException> exception = new AtomicReference<>();
+
+        final RequestBody body = streamContent ? null : RequestBody.create(readContent(session, originalFlowFile), PhilterHttpClient.TEXT_PLAIN);
+
+        final FlowFile filteredFlowFile;
+
+        try {
+
+            // Replace the content with the filtered text as it is received, reading the original content in the same pass.
+            filteredFlowFile = session.write(originalFlowFile, (in, out) -> {
+
+                try {
+                    assignedDocumentId.set(philterHttpClient.filter(context, documentId, filterProfile,
+                            streamContent ? new InputStreamRequestBody(PhilterHttpClient.TEXT_PLAIN, in, originalFlowFile.getSize()) : body, out));
+                } catch (final IOException ex) {
+                    // Throwing discards the partly written content so the flowfile keeps its original content.
+                    exception.set(ex);
+                    throw ex;
+                }
+
+            });
+
+        } catch (final ProcessException ex) {
+
+            if(exception.get() != null) {
+                throw exception.get();
+            }
+
+            throw ex;
+
+        }
+
+        transferRedacted(session, filteredFlowFile, filteredFlowFile, context, assignedDocumentId.get());
+
+    }
+
+    private void filterJson(final ProcessContext processContext, final ProcessSession session, final FlowFile originalFlowFile,
+                            final String context, final String documentId, final String filterProfile) throws IOException {
+
+        final Set<String> jsonPaths;
+
+        try {
+            jsonPaths = StreamingJsonFilter.parsePaths(processContext.getProperty(JSON_PATHS).evaluateAttributeExpressions(originalFlowFile).getValue());
+        } catch (final IllegalArgumentException ex) {
+            throw new IOException("The JSON paths are not valid.", ex);
+        }
+
+        final long targetSize = processContext.getProperty(GROUP_TARGET_SIZE).asDataSize(DataUnit.B).longValue();
+        final ValueFilter valueFilter = new ValueFilter(philterHttpClient, filterProfile, context, targetSize, getValueMemo(processContext, valueMemo));
+        final StreamingJsonFilter jsonFilter = new StreamingJsonFilter(jsonPaths, valueFilter, targetSize);
+
+        final AtomicReference<IOException> exception = new AtomicReference<>();
+        final AtomicLong values = new AtomicLong();
+
+        // Copy the document, filtering the selected values along the way.
+        final StreamCallback callback = (in, out) -> {
+
+            try {
+                values.set(jsonFilter.filter(in, out));
+            } catch (final IOException ex) {
+                // Throwing discards the partly written content.
+                exception.set(ex);
+                throw ex;
+            }
+
+        };
+
+        final FlowFile filteredFlowFile = emitOriginal ? session.create(originalFlowFile) : originalFlowFile;
+        final FlowFile writtenFlowFile;
+
+        try {
+
+            if(emitOriginal) {
+                writtenFlowFile = session.write(filteredFlowFile, out -> session.read(originalFlowFile, in -> callback.process(in, out)));
+            } else {
+                writtenFlowFile = session.write(filteredFlowFile, callback);
+            }
+
+        } catch (final ProcessException | ClientException | UnauthorizedException | ServiceUnavailableException ex) {
+
+            if(emitOriginal) {
+                session.remove(filteredFlowFile);
+            }
+
+            if(exception.get() != null) {
+                throw exception.get();
+            }
+
+            throw ex;
+
+        }
+
+        session.adjustCounter(COUNTER_JSON_VALUES, values.get(), false);
+        session.adjustCounter(COUNTER_JSON_REQUESTS, valueFilter.getRequests(), false);
+        session.adjustCounter(COUNTER_MEMOIZED_VALUES, valueFilter.getMemoHits(), false);
+
+        transferRedacted(session, originalFlowFile, writtenFlowFile, context, documentId);
+
+    }
+
+    private void filterSpansLocally(final ProcessSession session, final FlowFile originalFlowFile, final String context,
+                                    final String documentId, final String filterProfile) throws IOException {
+
+        final AtomicReference<ExplainResponse> explainResponse = new AtomicReference<>();
+        final AtomicReference<IOException> exception = new AtomicReference<>();
+
+        // Only the spans are read from the response so the filtered text never has to be decoded.
+        session.read(originalFlowFile, in -> {
+
+            try {
+                explainResponse.set(philterHttpClient.explainSpans(context, documentId, filterProfile,
+                        new InputStreamRequestBody(PhilterHttpClient.TEXT_PLAIN, in, originalFlowFile.getSize())));
+            } catch (final IOException ex) {
+                exception.set(ex);
+            }
+
+        });
+
+        if(exception.get() != null) {
+            throw exception.get();
+        }
+
+        final List<Span> spans = SpanSplicer.resolveOverlaps(SpanSplicer.getAppliedSpans(explainResponse.get()));
+        final String assignedDocumentId = explainResponse.get().getDocumentId() != null ? explainResponse.get().getDocumentId() : documentId;
+
+        // Without any spans there is nothing to replace.
+        if(spans.isEmpty() && routeCleanDocuments) {
+
+            FlowFile cleanFlowFile = session.putAttribute(originalFlowFile, ATTRIBUTE_DOCUMENT_ID, assignedDocumentId);
+            cleanFlowFile = session.putAttribute(cleanFlowFile, ATTRIBUTE_CONTEXT, context);
+
+            session.adjustCounter(COUNTER_CLEAN_DOCUMENTS, 1, false);
+            session.transfer(cleanFlowFile, REL_CLEAN);
+
+            return;
+
+        }
+
+        final AtomicReference<IOException> spliceException = new AtomicReference<>();
+
+        // Copy the original content, replacing the spans along the way.
+        final StreamCallback callback = (in, out) -> {
+
+            try {
+                SpanSplicer.splice(in, out, spans);
+            } catch (final IOException ex) {
+                // Such as content that is not valid UTF-8. Throwing discards the partly written content.
+                spliceException.set(ex);
+                throw ex;
+            }
+
+        };
+
+        final FlowFile clonedFlowFile = emitOriginal ? session.create(originalFlowFile) : originalFlowFile;
+        final FlowFile filteredFlowFile;
+
+        try {
+
+            if(emitOriginal) {
+                filteredFlowFile = session.write(clonedFlowFile, out -> session.read(originalFlowFile, in -> callback.process(in, out)));
+            } else {
+                filteredFlowFile = session.write(clonedFlowFile, callback);
+            }
+
+        } catch (final ProcessException ex) {
+
+            if(emitOriginal) {
+                session.remove(clonedFlowFile);
+            }
+
+            if(spliceException.get() != null) {
+                throw spliceException.get();
+            }
+
+            throw ex;
+
+        }
+
+        transferRedacted(session, originalFlowFile, filteredFlowFile, context, assignedDocumentId);
+
+    }
+
+    private String getCacheKey(final ProcessSession session, final FlowFile flowFile, final String filterProfile,
+                               final String context, final String mimeType) {
+
+        final ContentDigest contentDigest = new ContentDigest(filterProfile, context, mimeType);
+
+        session.read(flowFile, contentDigest::update);
+
+        return contentDigest.toHex();
+
+    }
+
+    private boolean needsCacheKey() {
+        return requestCoalescer != null || resultCache != null || diskCache != null || distributedCache != null;
+    }
+
+    private boolean isCaching() {
+        return resultCache != null || diskCache != null || distributedCache != null;
+    }
+
+    private String getCachedResult(final ProcessSession session, final String cacheKey) {
+
+        if(resultCache != null) {
+
+            final String filteredText = resultCache.get(cacheKey);
+
+            session.adjustCounter(filteredText == null ? COUNTER_CACHE_MISSES : COUNTER_CACHE_HITS, 1, false);
+
+            if(filteredText != null) {
+                return filteredText;
+            }
+
+        }
+
+        if(diskCache != null && diskCache.isLoaded()) {
+
+            try {
+
+                final String filteredText = diskCache.get(cacheKey);
+
+                session.adjustCounter(filteredText == null ? COUNTER_DISK_CACHE_MISSES : COUNTER_DISK_CACHE_HITS, 1, false);
+
+                if(filteredText != null) {
+
+                    if(resultCache != null) {
+                        resultCache.put(cacheKey, filteredText);
+                    }
+
+                    return filteredText;
+
+                }
+
+            } catch (final IOException ex) {
+                getLogger().warn("Unable to get filtered text from the disk cache.", ex);
+            }
+
+        }
+
+        if(distributedCache != null) {
+
+            try {
+
+                final String filteredText = distributedCache.get(cacheKey);
+
+                session.adjustCounter(filteredText == null ? COUNTER_DISTRIBUTED_CACHE_MISSES : COUNTER_DISTRIBUTED_CACHE_HITS, 1, false);
+
+                if(filteredText != null) {
+                    putLocalCachedResult(cacheKey, filteredText);
+                }
+
+                return filteredText;
+
+            } catch (final IOException ex) {
+
+                // An unreachable cache only costs a request to Philter.
+                getLogger().warn("Unable to get filtered text from the distributed cache.", ex);
+
+            }
+
+        }
+
+        return null;
+
+    }
+
+    private void putCachedResult(final String cacheKey, final FilterResponse filterResponse) {
+
+        if(cacheKey == null || !isCaching()) {
+            return;
+        }
+
+        putLocalCachedResult(cacheKey, filterResponse.getFilteredText());
+
+        if(distributedCache != null) {
+
+            try {
+                distributedCache.put(cacheKey, filterResponse.getFilteredText());
+            } catch (final IOException ex) {
+                getLogger().warn("Unable to put filtered text in the distributed cache.", ex);
+            }
+
+        }
+
+    }
+
+    private void putLocalCachedResult(final String cacheKey, final String filteredText) {
+
+        if(resultCache != null) {
+            resultCache.put(cacheKey, filteredText);
+        }
+
+        if(diskCache != null) {
+
+            try {
+                diskCache.put(cacheKey, filteredText);
+            } catch (final IOException ex) {
+                getLogger().warn("Unable to put filtered text in the disk cache.", ex);
+            }
+
+        }
+
+    }
+
+    private String readContent(final ProcessSession session, final FlowFile flowFile) {
+
+        // Will hold the content (text we are processing). Content is UTF-8 on every path, the same as the
+        // streamed request bodies and the byte offsets spans are applied at.
+        final AtomicReference<String> content = new AtomicReference<>();
+
+        session.read(flowFile, in -> content.set(IOUtils.toString(in, StandardCharsets.UTF_8)));
+
+        return content.get();
+
+    }
+
+    private void transferFiltered(final ProcessSession session, FlowFile originalFlowFile, final String context, final FilterResponse filterResponse) {
+
+        final byte[] filteredText = filterResponse.getFilteredText().getBytes(StandardCharsets.UTF_8);
+
+        // A document Philter didn't change has nothing to redact so there is no need for a copy.
+        if(routeCleanDocuments && isUnchanged(session, originalFlowFile, filteredText)) {
+
+            originalFlowFile = session.putAttribute(originalFlowFile, ATTRIBUTE_DOCUMENT_ID, filterResponse.getDocumentId());
+            originalFlowFile = session.putAttribute(originalFlowFile, ATTRIBUTE_CONTEXT, context);
+
+            session.adjustCounter(COUNTER_CLEAN_DOCUMENTS, 1, false);
+            session.transfer(originalFlowFile, REL_CLEAN);
+
+            return;
+
+        }
+
+        // Clone the flowfile unless the filtered text replaces the original content.
+        FlowFile filteredFlowFile = emitOriginal ? session.create(originalFlowFile) : originalFlowFile;
+
+        // Write the filtered text back to the flowfile.
+        filteredFlowFile = session.write(filteredFlowFile, out -> out.write(filteredText));
+
+        transferRedacted(session, originalFlowFile, filteredFlowFile, context, filterResponse.getDocumentId());
+
+    }
+
+    private boolean isUnchanged(final ProcessSession session, final FlowFile flowFile, final byte[] filteredText) {
+
+        // Any replacement that changes the length is caught without reading the content.
+        if(filteredText.length != flowFile.getSize()) {
+            return false;
+        }
+
+        final AtomicBoolean unchanged = new AtomicBoolean(true);
+
+        session.read(flowFile, in -> {
+
+            final byte[] buffer = new byte[8192];
+            int position = 0;
+            int read;
+
+            while((read = in.read(buffer)) != -1) {
+
+                for(int i = 0; i < read; i++) {
+                    if(buffer[i] != filteredText[position + i]) {
+                        unchanged.set(false);
+                        return;
+                    }
+                }
+
+                position += read;
+
+            }
+
+        });
+
+        return unchanged.get();
+
+    }
+
+    private void transferRedacted(final ProcessSession session, final FlowFile originalFlowFile, FlowFile filteredFlowFile,
+                                  final String context, final String documentId) {
+
+        // Write the document ID and context as attributes.
+        filteredFlowFile = session.putAttribute(filteredFlowFile, ATTRIBUTE_DOCUMENT_ID, documentId);
+        filteredFlowFile = session.putAttribute(filteredFlowFile, ATTRIBUTE_CONTEXT, context);
+
+        // All done.
+        session.transfer(filteredFlowFile, REL_REDACTED);
+
+        if(emitOriginal) {
+            session.transfer(originalFlowFile, REL_ORIGINAL);
+        }
+
+    }
+
+    private void transferFailure(final ProcessSession session, FlowFile originalFlowFile, final Throwable ex) {
+
+        originalFlowFile = session.penalize(originalFlowFile);
+        session.transfer(originalFlowFile, REL_FAILURE);
+        getLogger().error("Unable to process flow file content for Philter redaction.", ex);
+
+    }
+
+    /**
+     * Accepts flowfiles until a count or a total size is reached, across any number of pulls.
+     */
+    private static class GroupBatchFilter implements FlowFileFilter {
+
+        private final int maxCount;
+        private final long targetSize;
+
+        private int count;
+        private long size;
+
+        private GroupBatchFilter(int maxCount, long targetSize) {
+            this.maxCount = maxCount;
+            this.targetSize = targetSize;
+        }
+
+        @Override
+        public FlowFileFilterResult filter(FlowFile flowFile) {
+
+            if(isFull()) {
+                return FlowFileFilterResult.REJECT_AND_TERMINATE;
+            }
+
+            count++;
+            size += flowFile.getSize();
+
+            return isFull() ? FlowFileFilterResult.ACCEPT_AND_TERMINATE : FlowFileFilterResult.ACCEPT_AND_CONTINUE;
+
+        }
+
+        private boolean isFull() {
+            return count >= maxCount || size >= targetSize;
+        }
+
+    }
 
-        } catch (final IOException ex) {
+    private static class CompletedRequest {
 
-            originalFlowFile = session.penalize(originalFlowFile);
-            session.transfer(originalFlowFile, REL_FAILURE);
-            logger.error("Unable to process flow file content for Philter redaction.", ex);
+        private final FlowFile flowFile;
+        private final String context;
+        private final String cacheKey;
+        private final FilterResponse filterResponse;
+        private final Throwable throwable;
 
+        private CompletedRequest(FlowFile flowFile, String context, String cacheKey, FilterResponse filterResponse, Throwable throwable) {
+            this.flowFile = flowFile;
+            this.context = context;
+            this.cacheKey = cacheKey;
+            this.filterResponse = filterResponse;
+            this.throwable = throwable;
         }
 
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2021 Mountain Fog, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtnfog.philter.processors;
+
+import com.mtnfog.philter.client.InputStreamRequestBody;
+import com.mtnfog.philter.client.PhilterHttpClient;
+import com.mtnfog.philter.model.ExplainResponse;
+import com.mtnfog.philter.model.Span;
+import com.mtnfog.philter.model.exceptions.ClientException;
+import com.mtnfog.philter.model.exceptions.ServiceUnavailableException;
+import com.mtnfog.philter.model.exceptions.UnauthorizedException;
+import com.mtnfog.philter.text.SpanSplicer;
+import org.apache.nifi.annotation.behavior.ReadsAttribute;
+import org.apache.nifi.annotation.behavior.ReadsAttributes;
+import org.apache.nifi.annotation.behavior.WritesAttribute;
+import org.apache.nifi.annotation.behavior.WritesAttributes;
+import org.apache.nifi.annotation.documentation.CapabilityDescription;
+import org.apache.nifi.annotation.documentation.SeeAlso;
+import org.apache.nifi.annotation.documentation.Tags;
+import org.apache.nifi.annotation.lifecycle.OnScheduled;
+import org.apache.nifi.components.PropertyDescriptor;
+import org.apache.nifi.flowfile.FlowFile;
+import org.apache.nifi.processor.*;
+import org.apache.nifi.processor.exception.ProcessException;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+@Tags({"philter", "phi", "pii", "nppi", "detect", "classify", "route", "api"})
+@CapabilityDescription("Identifies sensitive information in text using Philter and describes it in attributes without changing the content.")
+@SeeAlso({Philter.class})
+@ReadsAttributes({
+        @ReadsAttribute(attribute = Philter.ATTRIBUTE_CONTEXT, description = "The document context."),
+        @ReadsAttribute(attribute = Philter.ATTRIBUTE_DOCUMENT_ID, description = "The document ID.")
+})
+@WritesAttributes({
+        @WritesAttribute(attribute = Philter.ATTRIBUTE_DOCUMENT_ID, description = "The document ID when assigned by Philter."),
+        @WritesAttribute(attribute = PhilterDetect.ATTRIBUTE_SPAN_COUNT, description = "The number of spans of sensitive information identified."),
+        @WritesAttribute(attribute = PhilterDetect.ATTRIBUTE_SPAN_COUNT + ".*", description = "The number of spans identified of each filter type, "
+                + "such as " + PhilterDetect.ATTRIBUTE_SPAN_COUNT + ".ssn. Spans without a filter type are counted as unknown."),
+        @WritesAttribute(attribute = PhilterDetect.ATTRIBUTE_MAX_CONFIDENCE, description = "The highest confidence of the spans identified. "
+                + "Not written when no spans were identified.")
+})
+public class PhilterDetect extends AbstractProcessor {
+
+    public static final Relationship REL_CONTAINS_PII = new Relationship.Builder()
+            .name("contains-pii")
+            .description("Flowfiles in which Philter identified sensitive information will be routed to this transition.")
+            .build();
+
+    public static final Relationship REL_NO_PII = new Relationship.Builder()
+            .name("no-pii")
+            .description("Flowfiles in which Philter did not identify any sensitive information will be routed to this transition.")
+            .build();
+
+    public static final Relationship REL_FAILURE = new Relationship.Builder()
+            .name("failure")
+            .description("Any flowfiles that fail processing will be routed to this transition.")
+            .build();
+
+    public static final String ATTRIBUTE_SPAN_COUNT = "philter.span.count";
+    public static final String ATTRIBUTE_MAX_CONFIDENCE = "philter.span.max.confidence";
+
+    // Counts the spans Philter did not give a filter type.
+    private static final String UNKNOWN_FILTER_TYPE = "unknown";
+
+    private List<PropertyDescriptor> descriptors;
+    private Set<Relationship> relationships;
+
+    private PhilterHttpClient philterHttpClient;
+
+    @Override
+    protected void init(final ProcessorInitializationContext context) {
+
+        final List<PropertyDescriptor> descriptors = new ArrayList<>();
+
+        descriptors.add(Philter.FILTER_PROFILE_NAME);
+        descriptors.add(Philter.PHILTER_API_ENDPOINT);
+        descriptors.add(Philter.PHILTER_CLIENT_SERVICE);
+        descriptors.add(Philter.LOAD_BALANCING_STRATEGY);
+        descriptors.add(Philter.DISABLE_CERTIFICATE_VALIDATION);
+        descriptors.add(Philter.BATCH_SIZE);
+
+        this.descriptors = Collections.unmodifiableList(descriptors);
+
+        final Set<Relationship> relationships = new HashSet<>();
+
+        relationships.add(REL_CONTAINS_PII);
+        relationships.add(REL_NO_PII);
+        relationships.add(REL_FAILURE);
+
+        this.relationships = Collections.unmodifiableSet(relationships);
+
+    }
+
+    @Override
+    public Set<Relationship> getRelationships() {
+        return this.relationships;
+    }
+
+    @Override
+    public final List<PropertyDescriptor> getSupportedPropertyDescriptors() {
+        return descriptors;
+    }
+
+    @OnScheduled
+    public void onScheduled(final ProcessContext context) throws Exception {
+
+        // Flowfiles are sent to Philter one at a time from each thread.
+        this.philterHttpClient = Philter.createPhilterHttpClient(context, context.getMaxConcurrentTasks());
+
+    }
+
+    @Override
+    public void onTrigger(final ProcessContext processContext, final ProcessSession session) throws ProcessException {
+
+        final List<FlowFile> flowFiles = session.get(processContext.getProperty(Philter.BATCH_SIZE).asInteger());
+
+        for(final FlowFile flowFile : flowFiles) {
+
+            try {
+                detect(processContext, session, flowFile);
+            } catch (final IOException | ClientException | UnauthorizedException | ServiceUnavailableException ex) {
+                // Philter rejecting a document only fails that flowfile rather than the whole batch.
+                session.transfer(session.penalize(flowFile), REL_FAILURE);
+                getLogger().error("Unable to identify sensitive information in flow file content with Philter.", ex);
+            }
+
+        }
+
+    }
+
+    private void detect(final ProcessContext processContext, final ProcessSession session, FlowFile flowFile) throws IOException {
+
+        final String filterProfile = processContext.getProperty(Philter.FILTER_PROFILE_NAME).evaluateAttributeExpressions(flowFile).getValue();
+        final String context = flowFile.getAttribute(Philter.ATTRIBUTE_CONTEXT);
+        final String documentId = flowFile.getAttribute(Philter.ATTRIBUTE_DOCUMENT_ID);
+
+        final AtomicReference<ExplainResponse> explainResponse = new AtomicReference<>();
+        final AtomicReference<IOException> exception = new AtomicReference<>();
+        final long size = flowFile.getSize();
+
+        // The content is streamed to Philter and only the spans are read from the response.
+        session.read(flowFile, in -> {
+
+            try {
+                explainResponse.set(philterHttpClient.explainSpans(context, documentId, filterProfile,
+                        new InputStreamRequestBody(PhilterHttpClient.TEXT_PLAIN, in, size)));
+            } catch (final IOException ex) {
+                exception.set(ex);
+            }
+
+        });
+
+        if(exception.get() != null) {
+            throw exception.get();
+        }
+
+        final List<Span> spans = SpanSplicer.getAppliedSpans(explainResponse.get());
+        final Map<String, String> attributes = new HashMap<>();
+
+        final Map<String, Integer> counts = new TreeMap<>();
+        double maxConfidence = 0;
+
+        for(final Span span : spans) {
+            counts.merge(span.getFilterType() == null ? UNKNOWN_FILTER_TYPE : span.getFilterType(), 1, Integer::sum);
+            maxConfidence = Math.max(maxConfidence, span.getConfidence());
+        }
+
+        attributes.put(ATTRIBUTE_SPAN_COUNT, String.valueOf(spans.size()));
+
+        for(final Map.Entry<String, Integer> count : counts.entrySet()) {
+            attributes.put(ATTRIBUTE_SPAN_COUNT + "." + count.getKey().toLowerCase(Locale.ROOT), String.valueOf(count.getValue()));
+        }
+
+        if(!spans.isEmpty()) {
+            attributes.put(ATTRIBUTE_MAX_CONFIDENCE, String.valueOf(maxConfidence));
+        }
+
+        if(explainResponse.get().getDocumentId() != null) {
+            attributes.put(Philter.ATTRIBUTE_DOCUMENT_ID, explainResponse.get().getDocumentId());
+        }
+
+        flowFile = session.putAllAttributes(flowFile, attributes);
+
+        session.transfer(flowFile, spans.isEmpty() ? REL_NO_PII : REL_CONTAINS_PII);
+
+    }
+
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright 2021 Mountain Fog, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtnfog.philter.processors;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.mtnfog.philter.cache.FilterResultCache;
+import com.mtnfog.philter.client.PhilterHttpClient;
+import com.mtnfog.philter.client.ValueFilter;
+import com.mtnfog.philter.model.exceptions.ClientException;
+import com.mtnfog.philter.model.exceptions.ServiceUnavailableException;
+import com.mtnfog.philter.model.exceptions.UnauthorizedException;
+import com.mtnfog.philter.record.FieldPath;
+import com.mtnfog.philter.record.RecordSetFilter;
+import org.apache.nifi.annotation.behavior.ReadsAttribute;
+import org.apache.nifi.annotation.behavior.ReadsAttributes;
+import org.apache.nifi.annotation.behavior.WritesAttribute;
+import org.apache.nifi.annotation.behavior.WritesAttributes;
+import org.apache.nifi.annotation.documentation.CapabilityDescription;
+import org.apache.nifi.annotation.documentation.SeeAlso;
+import org.apache.nifi.annotation.documentation.Tags;
+import org.apache.nifi.annotation.lifecycle.OnScheduled;
+import org.apache.nifi.annotation.lifecycle.OnStopped;
+import org.apache.nifi.components.PropertyDescriptor;
+import org.apache.nifi.components.ValidationResult;
+import org.apache.nifi.components.Validator;
+import org.apache.nifi.expression.ExpressionLanguageScope;
+import org.apache.nifi.flowfile.FlowFile;
+import org.apache.nifi.flowfile.attributes.CoreAttributes;
+import org.apache.nifi.processor.*;
+import org.apache.nifi.processor.exception.ProcessException;
+import org.apache.nifi.processor.util.StandardValidators;
+
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Tags({"philter", "phi", "pii", "nppi", "redact", "redaction", "filter", "record", "json", "api"})
+@CapabilityDescription("Identifies and removes sensitive information in fields of JSON records using Philter. The values of the fields in "
+        + "many records are sent to Philter together so a record set does not have to be split into a flowfile per record.")
+@SeeAlso({Philter.class})
+@ReadsAttributes({
+        @ReadsAttribute(attribute = Philter.ATTRIBUTE_CONTEXT, description = "The document context.")
+})
+@WritesAttributes({
+        @WritesAttribute(attribute = PhilterRecord.ATTRIBUTE_RECORD_COUNT, description = "The number of records in the flowfile."),
+        @WritesAttribute(attribute = "mime.type", description = "Set to application/json.")
+})
+public class PhilterRecord extends AbstractProcessor {
+
+    private static final Validator FIELD_PATHS_VALIDATOR = (subject, input, context) -> {
+
+        if(context.isExpressionLanguageSupported(subject) && context.isExpressionLanguagePresent(input)) {
+            return new ValidationResult.Builder().subject(subject).input(input).valid(true).explanation("contains expression language").build();
+        }
+
+        try {
+
+            FieldPath.parseList(input);
+            return new ValidationResult.Builder().subject(subject).input(input).valid(true).build();
+
+        } catch (final IllegalArgumentException ex) {
+
+            return new ValidationResult.Builder().subject(subject).input(input).valid(false).explanation(ex.getMessage()).build();
+
+        }
+
+    };
+
+    public static final PropertyDescriptor FIELD_PATHS = new PropertyDescriptor.Builder()
+            .name("Field Paths")
+            .description("A comma-separated list of JSON paths to the fields to filter, where $ is each record, such as $.patient.name. "
+                    + "Use [*] to filter every element of an array, such as $.patients[*].name. Specific array indexes and bracket "
+                    + "notation are not supported. Only fields with string values are filtered.")
+            .required(true)
+            .expressionLanguageSupported(ExpressionLanguageScope.FLOWFILE_ATTRIBUTES)
+            .addValidator(FIELD_PATHS_VALIDATOR)
+            .build();
+
+    public static final PropertyDescriptor RECORDS_PER_BATCH = new PropertyDescriptor.Builder()
+            .name("Records Per Batch")
+            .description("The number of records read into memory at a time. The field values of a batch of records are sent to Philter together.")
+            .defaultValue("1000")
+            .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+            .required(true)
+            .build();
+
+    public static final PropertyDescriptor REQUEST_TARGET_SIZE = new PropertyDescriptor.Builder()
+            .name("Request Target Size")
+            .description("The size of the text sent to Philter in each request. Field values are joined into requests of about this size.")
+            .defaultValue("64 KB")
+            .addValidator(StandardValidators.DATA_SIZE_VALIDATOR)
+            .required(true)
+            .build();
+
+    public static final PropertyDescriptor BATCH_CONCURRENCY = new PropertyDescriptor.Builder()
+            .name("Batch Concurrency")
+            .description("The maximum number of batches of records from a flowfile that are filtered by Philter at the same time. "
+                    + "Records are written in the order they were read regardless of the order their batches complete in.")
+            .defaultValue("1")
+            .addValidator(StandardValidators.POSITIVE_INTEGER_VALIDATOR)
+            .required(true)
+            .build();
+
+    public static final String ATTRIBUTE_RECORD_COUNT = "record.count";
+
+    private static final String COUNTER_RECORDS = "Records";
+    private static final String COUNTER_REQUESTS = "Philter Requests";
+    private static final String COUNTER_FALLBACKS = "Batched Request Fallbacks";
+
+    // Nulls are kept so records are written back with the same fields.
+    private static final Gson GSON = new GsonBuilder().serializeNulls().disableHtmlEscaping().create();
+
+    private List<PropertyDescriptor> descriptors;
+    private Set<Relationship> relationships;
+
+    private PhilterHttpClient philterHttpClient;
+    private ExecutorService batchExecutor;
+    private int batchConcurrency;
+    private FilterResultCache valueMemo;
+
+    @Override
+    protected void init(final ProcessorInitializationContext context) {
+
+        final List<PropertyDescriptor> descriptors = new ArrayList<>();
+
+        descriptors.add(Philter.FILTER_PROFILE_NAME);
+        descriptors.add(Philter.PHILTER_API_ENDPOINT);
+        descriptors.add(Philter.PHILTER_CLIENT_SERVICE);
+        descriptors.add(Philter.LOAD_BALANCING_STRATEGY);
+        descriptors.add(Philter.DISABLE_CERTIFICATE_VALIDATION);
+        descriptors.add(FIELD_PATHS);
+        descriptors.add(RECORDS_PER_BATCH);
+        descriptors.add(REQUEST_TARGET_SIZE);
+        descriptors.add(BATCH_CONCURRENCY);
+        descriptors.add(Philter.VALUE_MEMOIZATION);
+        descriptors.add(Philter.VALUE_MEMO_SIZE);
+        descriptors.add(Philter.VALUE_MEMO_TTL);
+
+        this.descriptors = Collections.unmodifiableList(descriptors);
+
+        final Set<Relationship> relationships = new HashSet<>();
+
+        relationships.add(Philter.REL_REDACTED);
+        relationships.add(Philter.REL_ORIGINAL);
+        relationships.add(Philter.REL_FAILURE);
+
+        this.relationships = Collections.unmodifiableSet(relationships);
+
+    }
+
+    @Override
+    public Set<Relationship> getRelationships() {
+        return this.relationships;
+    }
+
+    @Override
+    public final List<PropertyDescriptor> getSupportedPropertyDescriptors() {
+        return descriptors;
+    }
+
+    @OnScheduled
+    public void onScheduled(final ProcessContext context) throws Exception {
+
+        // Never leave behind the pool of a start that failed before the processor was stopped.
+        onStopped();
+
+        this.batchConcurrency = context.getProperty(BATCH_CONCURRENCY).asInteger();
+        this.valueMemo = Philter.createValueMemo(context);
+        this.philterHttpClient = Philter.createPhilterHttpClient(context, context.getMaxConcurrentTasks());
+
+        // Created last so nothing above can fail after the pool is started.
+        if(batchConcurrency > 1) {
+            this.batchExecutor = Executors.newFixedThreadPool(batchConcurrency);
+        } else {
+            this.batchExecutor = null;
+        }
+
+    }
+
+    @OnStopped
+    public void onStopped() {
+
+        if(batchExecutor != null) {
+            batchExecutor.shutdownNow();
+            batchExecutor = null;
+        }
+
+    }
+
+    @Override
+    public void onTrigger(final ProcessContext processContext, final ProcessSession session) throws ProcessException {
+
+        final FlowFile originalFlowFile = session.get();
+
+        if(originalFlowFile == null) {
+            return;
+        }
+
+        final String filterProfile = processContext.getProperty(Philter.FILTER_PROFILE_NAME).evaluateAttributeExpressions(originalFlowFile).getValue();
+        final String context = originalFlowFile.getAttribute(Philter.ATTRIBUTE_CONTEXT);
+        final int recordsPerBatch = processContext.getProperty(RECORDS_PER_BATCH).asInteger();
+
+        final ValueFilter valueFilter = new ValueFilter(philterHttpClient, filterProfile, context,
+                processContext.getProperty(REQUEST_TARGET_SIZE).asDataSize(DataUnit.B).longValue(), Philter.getValueMemo(processContext, valueMemo));
+
+        final AtomicLong recordCount = new AtomicLong();
+        FlowFile filteredFlowFile = session.create(originalFlowFile);
+
+        try {
+
+            final List<FieldPath> fieldPaths = FieldPath.parseList(processContext.getProperty(FIELD_PATHS).evaluateAttributeExpressions(originalFlowFile).getValue());
+
+            final RecordSetFilter recordSetFilter = new RecordSetFilter(GSON, fieldPaths, valueFilter, recordsPerBatch, batchExecutor, batchConcurrency);
+
+            // Read the records from the original while the filtered records are written to the copy.
+            filteredFlowFile = session.write(filteredFlowFile, out -> session.read(originalFlowFile,
+                    in -> recordCount.set(recordSetFilter.filter(in, out))));
+
+        } catch (final ProcessException | JsonParseException | IllegalArgumentException
+                | ClientException | UnauthorizedException | ServiceUnavailableException ex) {
+
+            session.remove(filteredFlowFile);
+            session.transfer(session.penalize(originalFlowFile), Philter.REL_FAILURE);
+            getLogger().error("Unable to process flow file records for Philter redaction.", ex);
+
+            return;
+
+        }
+
+        final Map<String, String> attributes = new HashMap<>();
+
+        attributes.put(ATTRIBUTE_RECORD_COUNT, String.valueOf(recordCount.get()));
+        attributes.put(CoreAttributes.MIME_TYPE.key(), "application/json");
+
+        filteredFlowFile = session.putAllAttributes(filteredFlowFile, attributes);
+
+        session.adjustCounter(COUNTER_RECORDS, recordCount.get(), false);
+        session.adjustCounter(COUNTER_REQUESTS, valueFilter.getRequests(), false);
+        session.adjustCounter(COUNTER_FALLBACKS, valueFilter.getFallbacks(), false);
+        session.adjustCounter(Philter.COUNTER_MEMOIZED_VALUES, valueFilter.getMemoHits(), false);
+
+        session.transfer(filteredFlowFile, Philter.REL_REDACTED);
+        session.transfer(originalFlowFile, Philter.REL_ORIGINAL);
+
+    }
+
+}
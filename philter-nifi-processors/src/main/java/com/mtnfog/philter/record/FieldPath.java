@@ -0,0 +1,140 @@
+/*
+ * Copyright 2021 Mountain Fog, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtnfog.philter.record;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.mtnfog.philter.json.JsonPath;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A path to fields in a record written as a {@link JsonPath} from the root of the record, such as
+ * <code>$.patient.name</code>. Arrays are only descended into where the path says so with
+ * <code>[*]</code>, as in <code>$.patients[*].name</code>, the same as paths in JSON documents.
+ * Only fields with string values are selected.
+ */
+public class FieldPath {
+
+    private final JsonPath path;
+
+    private FieldPath(JsonPath path) {
+        this.path = path;
+    }
+
+    /**
+     * Parses a path.
+     * @param path The path.
+     * @return The {@link FieldPath}.
+     * @throws IllegalArgumentException Thrown if the path is not valid or does not select a field of the record.
+     */
+    public static FieldPath parse(String path) {
+
+        final JsonPath jsonPath = JsonPath.parse(path);
+
+        // A record is an object or an array so the record itself is never a string value.
+        if(jsonPath.getLength() == 0) {
+            throw new IllegalArgumentException("The path " + jsonPath + " must select a field of the record.");
+        }
+
+        return new FieldPath(jsonPath);
+
+    }
+
+    /**
+     * Parses a comma-separated list of paths.
+     * @param paths The paths.
+     * @return The {@link FieldPath paths}.
+     * @throws IllegalArgumentException Thrown if there are no paths or any of the paths is not valid.
+     */
+    public static List<FieldPath> parseList(String paths) {
+
+        final List<FieldPath> fieldPaths = new ArrayList<>();
+
+        for(final JsonPath jsonPath : JsonPath.parseList(paths)) {
+            fieldPaths.add(parse(jsonPath.toString()));
+        }
+
+        return fieldPaths;
+
+    }
+
+    /**
+     * Finds the string values this path selects in a record.
+     * @param record The record.
+     * @param values Receives the values that were found.
+     */
+    public void collect(JsonElement record, List<FieldValue> values) {
+        collect(record, 0, values);
+    }
+
+    private void collect(JsonElement element, int step, List<FieldValue> values) {
+
+        final boolean last = step + 1 == path.getLength();
+
+        if(path.isEveryElement(step)) {
+
+            if(!element.isJsonArray()) {
+                return;
+            }
+
+            final JsonArray array = element.getAsJsonArray();
+
+            for(int i = 0; i < array.size(); i++) {
+
+                if(!last) {
+                    collect(array.get(i), step + 1, values);
+                } else if(isString(array.get(i))) {
+                    values.add(new FieldValue(array, i));
+                }
+
+            }
+
+        } else {
+
+            if(!element.isJsonObject()) {
+                return;
+            }
+
+            final JsonObject object = element.getAsJsonObject();
+            final JsonElement child = object.get(path.getName(step));
+
+            if(child == null) {
+                return;
+            }
+
+            if(!last) {
+                collect(child, step + 1, values);
+            } else if(isString(child)) {
+                values.add(new FieldValue(object, path.getName(step)));
+            }
+
+        }
+
+    }
+
+    private static boolean isString(JsonElement element) {
+        return element.isJsonPrimitive() && element.getAsJsonPrimitive().isString();
+    }
+
+    @Override
+    public String toString() {
+        return path.toString();
+    }
+
+}
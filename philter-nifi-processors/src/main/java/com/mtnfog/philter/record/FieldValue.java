@@ -0,0 +1,60 @@
+/*
+ * Copyright 2021 Mountain Fog, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtnfog.philter.record;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * A string value in a record found by a {@link FieldPath} that can be replaced in place.
+ */
+public class FieldValue {
+
+    private final JsonObject object;
+    private final String name;
+    private final JsonArray array;
+    private final int index;
+
+    FieldValue(JsonObject object, String name) {
+        this.object = object;
+        this.name = name;
+        this.array = null;
+        this.index = -1;
+    }
+
+    FieldValue(JsonArray array, int index) {
+        this.object = null;
+        this.name = null;
+        this.array = array;
+        this.index = index;
+    }
+
+    public String getValue() {
+        return object != null ? object.get(name).getAsString() : array.get(index).getAsString();
+    }
+
+    public void setValue(String value) {
+
+        if(object != null) {
+            object.addProperty(name, value);
+        } else {
+            array.set(index, new JsonPrimitive(value));
+        }
+
+    }
+
+}
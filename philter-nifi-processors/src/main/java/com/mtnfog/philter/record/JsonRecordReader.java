@@ -0,0 +1,268 @@
+/*
+ * Copyright 2021 Mountain Fog, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtnfog.philter.record;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads JSON records one at a time so a record set of any size never has to be held in memory.
+ * The records are either the elements of a top-level array or a sequence of top-level values
+ * separated by whitespace, such as newline-delimited JSON.
+ *
+ * Records are parsed strictly and each must be an object or an array. Content that is not JSON,
+ * which a lenient parser would read as a series of bare strings, fails instead of being passed
+ * through without any of its fields being filtered.
+ */
+public class JsonRecordReader {
+
+    private final TypeAdapter<JsonElement> adapter;
+    private final Reader reader;
+    private final char[] buffer = new char[8192];
+    private final boolean array;
+
+    private int position;
+    private int limit;
+    private JsonReader arrayReader;
+    private boolean finished;
+
+    /**
+     * Creates a reader.
+     * @param gson The {@link Gson} used to parse each record.
+     * @param in The UTF-8 encoded record set. The stream is not closed.
+     * @throws IOException Thrown if the record set cannot be read.
+     */
+    public JsonRecordReader(Gson gson, InputStream in) throws IOException {
+
+        // The adapter is used directly because Gson.fromJson always parses leniently.
+        this.adapter = gson.getAdapter(JsonElement.class);
+        this.reader = new InputStreamReader(in, StandardCharsets.UTF_8);
+
+        // Skip a byte order mark.
+        if(fill() && buffer[position] == '\uFEFF') {
+            position++;
+        }
+
+        this.array = skipWhitespace() == '[';
+
+        if(array) {
+            arrayReader = new JsonReader(new RemainingReader());
+            arrayReader.beginArray();
+        }
+
+    }
+
+    /**
+     * Reads the next record.
+     * @return The record, or <code>null</code> if there are no more records.
+     * @throws IOException Thrown if the record set cannot be read, is not valid JSON, or has a record
+     *                     that is not an object or an array.
+     */
+    public JsonElement next() throws IOException {
+
+        if(finished) {
+            return null;
+        }
+
+        if(array) {
+
+            if(!arrayReader.hasNext()) {
+
+                arrayReader.endArray();
+
+                // A strict reader fails on anything other than whitespace after the array.
+                if(arrayReader.peek() != JsonToken.END_DOCUMENT) {
+                    throw new IOException("The record set has content after its top-level array.");
+                }
+
+                finished = true;
+
+                return null;
+
+            }
+
+            return read(arrayReader);
+
+        }
+
+        final int c = skipWhitespace();
+
+        if(c == -1) {
+            finished = true;
+            return null;
+        }
+
+        if(c != '{' && c != '[') {
+            throw new IOException("Each record must be a JSON object or array.");
+        }
+
+        final JsonReader valueReader = new JsonReader(new ValueReader());
+        final JsonElement record = read(valueReader);
+
+        // The value reader ends at the end of the record so anything else is not valid within it.
+        if(valueReader.peek() != JsonToken.END_DOCUMENT) {
+            throw new IOException("The record at " + valueReader.getPath() + " is not valid JSON.");
+        }
+
+        return record;
+
+    }
+
+    /**
+     * Gets whether the records are the elements of a top-level array.
+     * @return <code>true</code> if the records are the elements of a top-level array.
+     */
+    public boolean isArray() {
+        return array;
+    }
+
+    private JsonElement read(JsonReader jsonReader) throws IOException {
+
+        final JsonToken token = jsonReader.peek();
+
+        if(token != JsonToken.BEGIN_OBJECT && token != JsonToken.BEGIN_ARRAY) {
+            throw new IOException("Each record must be a JSON object or array but the record at " + jsonReader.getPath() + " is a " + token + ".");
+        }
+
+        return adapter.read(jsonReader);
+
+    }
+
+    private boolean fill() throws IOException {
+
+        if(position < limit) {
+            return true;
+        }
+
+        position = 0;
+        limit = Math.max(0, reader.read(buffer));
+
+        return limit > 0;
+
+    }
+
+    private int skipWhitespace() throws IOException {
+
+        while(fill()) {
+
+            final char c = buffer[position];
+
+            if(c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                return c;
+            }
+
+            position++;
+
+        }
+
+        return -1;
+
+    }
+
+    /**
+     * Reads the rest of the record set.
+     */
+    private class RemainingReader extends Reader {
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+
+            if(!fill()) {
+                return -1;
+            }
+
+            final int count = Math.min(len, limit - position);
+
+            System.arraycopy(buffer, position, cbuf, off, count);
+            position += count;
+
+            return count;
+
+        }
+
+        @Override
+        public void close() {
+            // The record set is not closed.
+        }
+
+    }
+
+    /**
+     * Reads a single object or array from the record set and then ends, so each record can
+     * be parsed strictly on its own.
+     */
+    private class ValueReader extends Reader {
+
+        private int depth;
+        private boolean inString;
+        private boolean escaped;
+        private boolean ended;
+
+        @Override
+        public int read(char[] cbuf, int off, int len) throws IOException {
+
+            if(ended || !fill()) {
+                return -1;
+            }
+
+            int count = 0;
+
+            while(count < len && position < limit && !ended) {
+
+                final char c = buffer[position++];
+                cbuf[off + count++] = c;
+
+                if(inString) {
+
+                    if(escaped) {
+                        escaped = false;
+                    } else if(c == '\\') {
+                        escaped = true;
+                    } else if(c == '"') {
+                        inString = false;
+                    }
+
+                } else if(c == '"') {
+                    inString = true;
+                } else if(c == '{' || c == '[') {
+                    depth++;
+                } else if(c == '}' || c == ']') {
+                    ended = --depth == 0;
+                }
+
+            }
+
+            return count;
+
+        }
+
+        @Override
+        public void close() {
+            // The record set is not closed.
+        }
+
+    }
+
+}
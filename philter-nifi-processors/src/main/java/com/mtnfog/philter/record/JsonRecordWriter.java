@@ -0,0 +1,84 @@
+/*
+ * Copyright 2021 Mountain Fog, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtnfog.philter.record;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes JSON records one at a time, either as the elements of a top-level array or as
+ * newline-delimited JSON, to match the layout they were read in.
+ */
+public class JsonRecordWriter {
+
+    private final Gson gson;
+    private final Writer writer;
+    private final boolean array;
+
+    private boolean first = true;
+
+    /**
+     * Creates a writer.
+     * @param gson The {@link Gson} used to write each record.
+     * @param out The stream to receive the UTF-8 encoded record set. The stream is not closed.
+     * @param array Whether to write the records as the elements of a top-level array.
+     */
+    public JsonRecordWriter(Gson gson, OutputStream out, boolean array) {
+
+        this.gson = gson;
+        this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        this.array = array;
+
+    }
+
+    public void write(JsonElement record) throws IOException {
+
+        if(array) {
+            writer.write(first ? "[" : ",");
+        }
+
+        gson.toJson(record, writer);
+
+        if(!array) {
+            writer.write("\n");
+        }
+
+        first = false;
+
+    }
+
+    /**
+     * Ends the record set and flushes it to the stream.
+     * @throws IOException Thrown if the record set cannot be written.
+     */
+    public void finish() throws IOException {
+
+        if(array) {
+            writer.write(first ? "[]" : "]");
+        }
+
+        writer.flush();
+
+    }
+
+}
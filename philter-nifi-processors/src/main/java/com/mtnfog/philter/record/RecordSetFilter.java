@@ -0,0 +1,208 @@
+/*
+ * Copyright 2021 Mountain Fog, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtnfog.philter.record;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.mtnfog.philter.client.ValueFilter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Filters the fields of a JSON record set in batches of records. Batches can be filtered at the
+ * same time but the records are always written in the order they were read.
+ */
+public class RecordSetFilter {
+
+    private final Gson gson;
+    private final List<FieldPath> fieldPaths;
+    private final ValueFilter valueFilter;
+    private final int recordsPerBatch;
+    private final ExecutorService executor;
+    private final int concurrency;
+
+    /**
+     * Creates a filter.
+     * @param gson The {@link Gson} used to read and write the records.
+     * @param fieldPaths The paths to the fields to filter.
+     * @param valueFilter The {@link ValueFilter} that filters the values of the fields.
+     * @param recordsPerBatch The number of records in a batch.
+     * @param executor The {@link ExecutorService} that filters batches, or <code>null</code> to filter
+     *                 each batch on the calling thread.
+     * @param concurrency The number of batches the executor filters at the same time.
+     */
+    public RecordSetFilter(Gson gson, List<FieldPath> fieldPaths, ValueFilter valueFilter, int recordsPerBatch,
+                           ExecutorService executor, int concurrency) {
+
+        this.gson = gson;
+        this.fieldPaths = fieldPaths;
+        this.valueFilter = valueFilter;
+        this.recordsPerBatch = recordsPerBatch;
+        this.executor = executor;
+        this.concurrency = concurrency;
+
+    }
+
+    /**
+     * Filters a record set.
+     * @param in The record set.
+     * @param out Receives the filtered record set in the same format as it was read.
+     * @return The number of records.
+     * @throws IOException Thrown if the record set cannot be read or written or the values cannot be filtered.
+     */
+    public long filter(InputStream in, OutputStream out) throws IOException {
+
+        final JsonRecordReader reader = new JsonRecordReader(gson, in);
+        final JsonRecordWriter writer = new JsonRecordWriter(gson, out, reader.isArray());
+
+        // Batches that are being filtered in the order they were read. Completed batches wait here until
+        // every batch before them has been written so the records keep their order.
+        final Deque<Future<List<JsonElement>>> pending = new ArrayDeque<>();
+
+        List<JsonElement> records = new ArrayList<>(recordsPerBatch);
+
+        long count = 0;
+        JsonElement record;
+
+        try {
+
+            while((record = reader.next()) != null) {
+
+                records.add(record);
+                count++;
+
+                if(records.size() == recordsPerBatch) {
+                    submitBatch(records, writer, pending);
+                    records = new ArrayList<>(recordsPerBatch);
+                }
+
+            }
+
+            if(!records.isEmpty()) {
+                submitBatch(records, writer, pending);
+            }
+
+            while(!pending.isEmpty()) {
+                writeRecords(getBatch(pending.poll()), writer);
+            }
+
+        } finally {
+
+            // No reason to let the remaining batches run if one of them failed.
+            for(final Future<List<JsonElement>> batch : pending) {
+                batch.cancel(true);
+            }
+
+        }
+
+        writer.finish();
+
+        return count;
+
+    }
+
+    private void submitBatch(final List<JsonElement> records, final JsonRecordWriter writer,
+                             final Deque<Future<List<JsonElement>>> pending) throws IOException {
+
+        if(executor == null) {
+            writeRecords(filterBatch(records), writer);
+            return;
+        }
+
+        pending.add(executor.submit(() -> filterBatch(records)));
+
+        // Keep a batch queued behind each one in flight so the pool stays busy while limiting how many records are held in memory.
+        while(pending.size() > concurrency * 2) {
+            writeRecords(getBatch(pending.poll()), writer);
+        }
+
+    }
+
+    private List<JsonElement> filterBatch(final List<JsonElement> records) throws IOException {
+
+        final List<FieldValue> fieldValues = new ArrayList<>();
+
+        for(final JsonElement record : records) {
+            for(final FieldPath fieldPath : fieldPaths) {
+                fieldPath.collect(record, fieldValues);
+            }
+        }
+
+        final List<String> values = new ArrayList<>(fieldValues.size());
+
+        for(final FieldValue fieldValue : fieldValues) {
+            values.add(fieldValue.getValue());
+        }
+
+        // Every value in the batch is filtered in as few requests as their size allows.
+        final List<String> filtered = valueFilter.filter(values);
+
+        for(int i = 0; i < fieldValues.size(); i++) {
+            fieldValues.get(i).setValue(filtered.get(i));
+        }
+
+        return records;
+
+    }
+
+    private List<JsonElement> getBatch(final Future<List<JsonElement>> batch) throws IOException {
+
+        try {
+
+            return batch.get();
+
+        } catch (final InterruptedException ex) {
+
+            Thread.currentThread().interrupt();
+
+            final InterruptedIOException interrupted = new InterruptedIOException("Interrupted while waiting for records to be filtered by Philter.");
+            interrupted.initCause(ex);
+
+            throw interrupted;
+
+        } catch (final ExecutionException ex) {
+
+            if(ex.getCause() instanceof IOException) {
+                throw (IOException) ex.getCause();
+            } else if(ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+
+            throw new IOException("Unable to filter records with Philter.", ex.getCause());
+
+        }
+
+    }
+
+    private void writeRecords(final List<JsonElement> records, final JsonRecordWriter writer) throws IOException {
+
+        for(final JsonElement record : records) {
+            writer.write(record);
+        }
+
+    }
+
+}
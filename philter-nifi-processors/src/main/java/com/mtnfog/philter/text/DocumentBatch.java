@@ -0,0 +1,125 @@
+/*
+ * Copyright 2021 Mountain Fog, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtnfog.philter.text;
+
+import com.mtnfog.philter.model.Span;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Joins several documents into a single text so they can be sent to Philter in one
+ * request, and splits the spans Philter identified in that text back out to the documents.
+ */
+public class DocumentBatch {
+
+    // A paragraph break keeps sentences from running across documents.
+    public static final String SEPARATOR = "\n\n";
+
+    private final List<String> documents;
+    private final int[] offsets;
+    private final String text;
+
+    public DocumentBatch(List<String> documents) {
+
+        this.documents = documents;
+        this.offsets = new int[documents.size()];
+
+        int length = 0;
+
+        for(final String document : documents) {
+            length += document.length() + SEPARATOR.length();
+        }
+
+        final StringBuilder sb = new StringBuilder(length);
+
+        for(int i = 0; i < documents.size(); i++) {
+
+            if(i > 0) {
+                sb.append(SEPARATOR);
+            }
+
+            offsets[i] = sb.length();
+            sb.append(documents.get(i));
+
+        }
+
+        this.text = sb.toString();
+
+    }
+
+    /**
+     * Assigns spans identified in the joined text to the documents they were found in.
+     * @param spans The spans identified in the joined text.
+     * @return The spans of each document positioned in that document, in the order the documents
+     * were given, or <code>null</code> if any span crosses from one document into another.
+     */
+    public List<List<Span>> split(List<Span> spans) {
+
+        final List<List<Span>> split = new ArrayList<>(documents.size());
+
+        for(int i = 0; i < documents.size(); i++) {
+            split.add(new ArrayList<>());
+        }
+
+        for(final Span span : spans) {
+
+            final int document = indexOf(span.getCharacterStart());
+
+            if(document < 0 || span.getCharacterEnd() > offsets[document] + documents.get(document).length()) {
+                return null;
+            }
+
+            split.get(document).add(SpanSplicer.shift(span, -offsets[document]));
+
+        }
+
+        return split;
+
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    private int indexOf(int position) {
+
+        int low = 0;
+        int high = offsets.length - 1;
+
+        // Find the last document starting at or before the position.
+        while(low < high) {
+
+            final int middle = (low + high + 1) >>> 1;
+
+            if(offsets[middle] <= position) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+
+        }
+
+        // A span starting in a separator doesn't belong to any document.
+        if(position < offsets[low] || position >= offsets[low] + documents.get(low).length()) {
+            return -1;
+        }
+
+        return low;
+
+    }
+
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2021 Mountain Fog, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtnfog.philter.text;
+
+import com.mtnfog.philter.model.Span;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Finds identifiers with well-known formats, such as SSNs and email addresses, without a request
+ * to Philter. Every identifier type is combined into a single pattern so the text is scanned once.
+ */
+public class IdentifierScanner {
+
+    public static final String SSN = "ssn";
+    public static final String PHONE_NUMBER = "phone-number";
+    public static final String EMAIL_ADDRESS = "email-address";
+    public static final String MEDICAL_RECORD_NUMBER = "medical-record-number";
+
+    /**
+     * The identifier types that have a built-in format. Medical record numbers need a format to be given.
+     */
+    public static final List<String> BUILT_IN_TYPES = Collections.unmodifiableList(Arrays.asList(SSN, PHONE_NUMBER, EMAIL_ADDRESS));
+
+    private static final Map<String, String> FORMATS = new LinkedHashMap<>();
+
+    static {
+
+        // Area numbers 000, 666 and 900-999, group 00 and serial 0000 are never issued.
+        FORMATS.put(SSN, "(?<![\\w-])(?!000|666|9\\d\\d)\\d{3}-(?!00)\\d{2}-(?!0000)\\d{4}(?![\\w-])");
+
+        // North American numbers with an optional country code, such as (555) 555-5555 or +1 555.555.5555.
+        FORMATS.put(PHONE_NUMBER, "(?<![\\w+-])(?:\\+?1[-. ]?)?(?:\\(\\d{3}\\) ?|\\d{3}[-. ])\\d{3}[-. ]\\d{4}(?![\\w-])");
+
+        FORMATS.put(EMAIL_ADDRESS, "(?<![\\w.%+-])[A-Za-z0-9._%+-]+@[A-Za-z0-9-]+(?:\\.[A-Za-z0-9-]+)*\\.[A-Za-z]{2,}(?![\\w-])");
+
+    }
+
+    private final Pattern pattern;
+    private final List<String> types;
+    private final String redactionFormat;
+
+    /**
+     * Creates a scanner.
+     * @param types The identifier types to find.
+     * @param medicalRecordNumberFormat A regular expression that matches medical record numbers, or <code>null</code>
+     *                                  to not find medical record numbers.
+     * @param redactionFormat The replacement of each identifier. <code>%t</code> is replaced with the identifier type.
+     * @throws IllegalArgumentException Thrown if an identifier type is not known or the medical record number format is not valid.
+     */
+    public IdentifierScanner(Collection<String> types, String medicalRecordNumberFormat, String redactionFormat) {
+
+        this.types = new ArrayList<>();
+        this.redactionFormat = redactionFormat;
+
+        final StringBuilder sb = new StringBuilder();
+
+        for(final String type : types) {
+
+            if(!FORMATS.containsKey(type)) {
+                throw new IllegalArgumentException("The identifier type " + type + " is not known.");
+            }
+
+            append(sb, type, FORMATS.get(type));
+
+        }
+
+        if(medicalRecordNumberFormat != null) {
+            validateFormat(medicalRecordNumberFormat);
+            append(sb, MEDICAL_RECORD_NUMBER, medicalRecordNumberFormat);
+        }
+
+        this.pattern = sb.length() == 0 ? null : Pattern.compile(sb.toString());
+
+    }
+
+    /**
+     * Finds the identifiers in text.
+     * @param text The text.
+     * @return The spans of the identifiers in the order they appear in the text, with their replacements.
+     */
+    public List<Span> scan(String text) {
+
+        if(pattern == null) {
+            return Collections.emptyList();
+        }
+
+        final List<Span> spans = new ArrayList<>();
+        final Matcher matcher = pattern.matcher(text);
+
+        while(matcher.find()) {
+
+            // Each identifier type is a named group of the pattern.
+            for(int i = 0; i < types.size(); i++) {
+
+                if(matcher.start(groupName(i)) != -1) {
+
+                    final Span span = new Span();
+
+                    span.setCharacterStart(matcher.start());
+                    span.setCharacterEnd(matcher.end());
+                    span.setFilterType(types.get(i));
+                    span.setText(matcher.group());
+                    span.setReplacement(redactionFormat.replace("%t", types.get(i)));
+                    span.setConfidence(1.0);
+
+                    spans.add(span);
+
+                    break;
+
+                }
+
+            }
+
+        }
+
+        return spans;
+
+    }
+
+    /**
+     * Replaces the identifiers in text.
+     * @param text The text.
+     * @return The text with each identifier replaced.
+     */
+    public String redact(String text) {
+        return SpanSplicer.splice(text, scan(text));
+    }
+
+    /**
+     * Checks that a regular expression can be combined with the built-in formats.
+     * @param format The regular expression.
+     * @throws IllegalArgumentException Thrown if the regular expression is not valid, matches empty text
+     * or has a numbered backreference.
+     */
+    public static void validateFormat(String format) {
+
+        final Pattern pattern;
+
+        try {
+            pattern = Pattern.compile(format);
+        } catch (PatternSyntaxException ex) {
+            throw new IllegalArgumentException("The format is not a valid regular expression: " + ex.getDescription());
+        }
+
+        if(pattern.matcher("").matches()) {
+            throw new IllegalArgumentException("The format must not match empty text.");
+        }
+
+        // The format becomes one group of the combined pattern so group numbers would refer to other groups.
+        for(int i = 0; i < format.length() - 1; i++) {
+
+            if(format.charAt(i) == '\\') {
+
+                final char next = format.charAt(i + 1);
+
+                if(next >= '1' && next <= '9') {
+                    throw new IllegalArgumentException("The format must not have a numbered backreference. Use a named group and \\k<name> instead.");
+                }
+
+                if(next == 'Q') {
+
+                    // Everything up to \E is quoted.
+                    final int end = format.indexOf("\\E", i + 2);
+
+                    if(end == -1) {
+                        break;
+                    }
+
+                    i = end;
+
+                }
+
+                i++;
+
+            }
+
+        }
+
+    }
+
+    private void append(StringBuilder sb, String type, String format) {
+
+        if(sb.length() > 0) {
+            sb.append('|');
+        }
+
+        sb.append("(?<").append(groupName(types.size())).append('>').append(format).append(')');
+
+        types.add(type);
+
+    }
+
+    private static String groupName(int index) {
+        return "identifier" + index;
+    }
+
+}
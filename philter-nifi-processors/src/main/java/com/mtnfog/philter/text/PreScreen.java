@@ -0,0 +1,108 @@
+/*
+ * Copyright 2021 Mountain Fog, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtnfog.philter.text;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Decides whether text could contain sensitive information by looking for bytes that every
+ * candidate must contain, such as a digit in an SSN or an @ in an email address. Text without
+ * any of those bytes can't contain a candidate and doesn't need to be sent to Philter.
+ *
+ * The bytes are looked up in a table so the content is checked in a single pass that stops at
+ * the first candidate byte. The text must be UTF-8 or another ASCII compatible encoding.
+ */
+public class PreScreen {
+
+    public static final String DIGITS = "digits";
+    public static final String UPPERCASE = "uppercase";
+    public static final String AT_SIGN = "at-sign";
+    public static final String NON_ASCII = "non-ascii";
+
+    public static final List<String> CHARACTER_CLASSES = Collections.unmodifiableList(Arrays.asList(DIGITS, UPPERCASE, AT_SIGN, NON_ASCII));
+
+    private final boolean[] candidates = new boolean[256];
+
+    /**
+     * Creates a pre-screen.
+     * @param characterClasses The classes of characters that can start or appear in a candidate.
+     * @throws IllegalArgumentException Thrown if a character class is not known.
+     */
+    public PreScreen(Collection<String> characterClasses) {
+
+        for(final String characterClass : characterClasses) {
+
+            switch(characterClass) {
+                case DIGITS:
+                    Arrays.fill(candidates, '0', '9' + 1, true);
+                    break;
+                case UPPERCASE:
+                    Arrays.fill(candidates, 'A', 'Z' + 1, true);
+                    break;
+                case AT_SIGN:
+                    candidates['@'] = true;
+                    break;
+                case NON_ASCII:
+                    // Every byte of a multi-byte UTF-8 character is at least 0x80.
+                    Arrays.fill(candidates, 0x80, 0x100, true);
+                    break;
+                default:
+                    throw new IllegalArgumentException("The character class " + characterClass + " is not known.");
+            }
+
+        }
+
+    }
+
+    /**
+     * Reads text until a candidate byte is found.
+     * @param in The text. The stream is not closed.
+     * @return <code>true</code> if the text contains a candidate byte.
+     * @throws IOException Thrown if the text cannot be read.
+     */
+    public boolean hasCandidates(InputStream in) throws IOException {
+
+        final byte[] buffer = new byte[8192];
+        int read;
+
+        while((read = in.read(buffer)) != -1) {
+            if(hasCandidates(buffer, read)) {
+                return true;
+            }
+        }
+
+        return false;
+
+    }
+
+    private boolean hasCandidates(byte[] buffer, int length) {
+
+        for(int i = 0; i < length; i++) {
+            if(candidates[buffer[i] & 0xff]) {
+                return true;
+            }
+        }
+
+        return false;
+
+    }
+
+}
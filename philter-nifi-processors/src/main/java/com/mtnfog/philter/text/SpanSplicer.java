@@ -0,0 +1,309 @@
+/*
+ * Copyright 2021 Mountain Fog, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtnfog.philter.text;
+
+import com.mtnfog.philter.model.ExplainResponse;
+import com.mtnfog.philter.model.Span;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Applies the replacements of spans identified by Philter to the original text.
+ */
+public class SpanSplicer {
+
+    private SpanSplicer() {
+        // Utility class.
+    }
+
+    /**
+     * Gets the spans Philter applied to a document from its response to the explain API.
+     * @param explainResponse The {@link ExplainResponse}.
+     * @return The applied spans, which is empty if the response has no explanation.
+     */
+    public static List<Span> getAppliedSpans(ExplainResponse explainResponse) {
+
+        if(explainResponse.getExplanation() == null || explainResponse.getExplanation().getAppliedSpans() == null) {
+            return Collections.emptyList();
+        }
+
+        return explainResponse.getExplanation().getAppliedSpans();
+
+    }
+
+    /**
+     * Copies a span and moves it by an offset, such as when a span was identified
+     * in a chunk and needs to be positioned in the whole document.
+     * @param span The {@link Span}.
+     * @param offset The number of characters to move the span by.
+     * @return A copy of the span moved by the offset.
+     */
+    public static Span shift(Span span, int offset) {
+
+        final Span shifted = new Span();
+
+        shifted.setId(span.getId());
+        shifted.setCharacterStart(span.getCharacterStart() + offset);
+        shifted.setCharacterEnd(span.getCharacterEnd() + offset);
+        shifted.setFilterType(span.getFilterType());
+        shifted.setContext(span.getContext());
+        shifted.setDocumentId(span.getDocumentId());
+        shifted.setConfidence(span.getConfidence());
+        shifted.setText(span.getText());
+        shifted.setReplacement(span.getReplacement());
+        shifted.setSalt(span.getSalt());
+        shifted.setIgnored(span.isIgnored());
+
+        return shifted;
+
+    }
+
+    /**
+     * Removes duplicate and overlapping spans, such as those identified twice where
+     * chunks overlap. When spans overlap the longest span is kept because a span cut
+     * short by a chunk boundary is always shorter than the same span seen whole.
+     * @param spans The spans.
+     * @return The non-overlapping spans sorted by their position in the text.
+     */
+    public static List<Span> resolveOverlaps(List<Span> spans) {
+
+        final List<Span> candidates = new ArrayList<>(spans);
+
+        candidates.sort(Comparator.comparingInt((Span span) -> span.getCharacterEnd() - span.getCharacterStart()).reversed()
+                .thenComparingInt(Span::getCharacterStart));
+
+        // Accepted spans keyed by their start.
+        final TreeMap<Integer, Span> accepted = new TreeMap<>();
+
+        for(final Span span : candidates) {
+
+            final Map.Entry<Integer, Span> before = accepted.floorEntry(span.getCharacterStart());
+            final Map.Entry<Integer, Span> after = accepted.ceilingEntry(span.getCharacterStart());
+
+            final boolean overlapsBefore = before != null && before.getValue().getCharacterEnd() > span.getCharacterStart();
+            final boolean overlapsAfter = after != null && after.getKey() < span.getCharacterEnd();
+
+            if(!overlapsBefore && !overlapsAfter) {
+                accepted.put(span.getCharacterStart(), span);
+            }
+
+        }
+
+        return new ArrayList<>(accepted.values());
+
+    }
+
+    /**
+     * Replaces each span in the text with its replacement.
+     * @param text The original text.
+     * @param spans Non-overlapping spans sorted by their position in the text.
+     * @return The text with the replacements applied.
+     */
+    public static String splice(String text, List<Span> spans) {
+
+        final StringBuilder sb = new StringBuilder(text.length());
+
+        int position = 0;
+
+        for(final Span span : spans) {
+
+            sb.append(text, position, span.getCharacterStart());
+
+            if(span.getReplacement() != null) {
+                sb.append(span.getReplacement());
+            }
+
+            position = span.getCharacterEnd();
+
+        }
+
+        sb.append(text, position, text.length());
+
+        return sb.toString();
+
+    }
+
+    /**
+     * Replaces each span in UTF-8 encoded text with its replacement while copying the text
+     * from one stream to another. Bytes outside of the spans are copied unchanged, so the
+     * text never has to be decoded or held in memory.
+     * @param in The original text encoded as UTF-8. The stream is not closed.
+     * @param out The stream to receive the text with the replacements applied. The stream is not closed.
+     * @param spans Non-overlapping spans sorted by their position in the text. Positions are
+     *              counted in UTF-16 characters, as Philter reports them.
+     * @throws IOException Thrown if the text cannot be read or written, or is not valid UTF-8. Philter decodes
+     * each malformed sequence as a replacement character, so the positions of the spans after it can't be
+     * trusted and some of the text written so far may not be filtered.
+     */
+    public static void splice(InputStream in, OutputStream out, List<Span> spans) throws IOException {
+
+        final ByteSplicer splicer = new ByteSplicer(out, spans);
+        final byte[] buffer = new byte[8192];
+
+        int read;
+
+        while((read = in.read(buffer)) != -1) {
+            splicer.write(buffer, read);
+        }
+
+        splicer.finish();
+
+    }
+
+    private static class ByteSplicer {
+
+        private final OutputStream out;
+        private final List<Span> spans;
+
+        private int next;
+        private Span span;
+        private boolean inSpan;
+
+        // The position in UTF-16 characters of the next character to start.
+        private long position;
+
+        // The continuation bytes still expected for the current character and the range the next one must be in.
+        private int continuations;
+        private int minContinuation = 0x80;
+        private int maxContinuation = 0xbf;
+
+        private ByteSplicer(OutputStream out, List<Span> spans) {
+            this.out = out;
+            this.spans = spans;
+            this.span = spans.isEmpty() ? null : spans.get(0);
+        }
+
+        private void write(byte[] buffer, int length) throws IOException {
+
+            int copyFrom = 0;
+
+            for(int i = 0; i < length; i++) {
+
+                final int b = buffer[i] & 0xff;
+
+                if(continuations > 0) {
+
+                    if(b < minContinuation || b > maxContinuation) {
+                        throw malformed();
+                    }
+
+                    continuations--;
+                    minContinuation = 0x80;
+                    maxContinuation = 0xbf;
+
+                    continue;
+
+                }
+
+                if(b >= 0x80) {
+                    startCharacter(b);
+                }
+
+                copyFrom = atCharacter(buffer, copyFrom, i);
+
+                // Characters encoded in four bytes are a surrogate pair in UTF-16.
+                position += b >= 0xf0 ? 2 : 1;
+
+            }
+
+            if(!inSpan) {
+                out.write(buffer, copyFrom, length - copyFrom);
+            }
+
+        }
+
+        private void finish() throws IOException {
+
+            if(continuations > 0) {
+                throw malformed();
+            }
+
+            atCharacter(null, 0, 0);
+
+        }
+
+        private void startCharacter(int b) throws IOException {
+
+            // Reject the same sequences as the JDK's decoder: stray continuation bytes, overlong
+            // encodings, surrogates and code points above U+10FFFF.
+            if(b >= 0xc2 && b <= 0xdf) {
+                continuations = 1;
+            } else if(b >= 0xe0 && b <= 0xef) {
+                continuations = 2;
+                minContinuation = b == 0xe0 ? 0xa0 : 0x80;
+                maxContinuation = b == 0xed ? 0x9f : 0xbf;
+            } else if(b >= 0xf0 && b <= 0xf4) {
+                continuations = 3;
+                minContinuation = b == 0xf0 ? 0x90 : 0x80;
+                maxContinuation = b == 0xf4 ? 0x8f : 0xbf;
+            } else {
+                throw malformed();
+            }
+
+        }
+
+        private IOException malformed() {
+            return new IOException("The content is not valid UTF-8 at UTF-16 position " + position + " so the spans can't be applied.");
+        }
+
+        private int atCharacter(byte[] buffer, int copyFrom, int index) throws IOException {
+
+            while(span != null) {
+
+                if(inSpan && position >= span.getCharacterEnd()) {
+
+                    if(span.getReplacement() != null) {
+                        out.write(span.getReplacement().getBytes(StandardCharsets.UTF_8));
+                    }
+
+                    inSpan = false;
+                    copyFrom = index;
+                    span = ++next < spans.size() ? spans.get(next) : null;
+
+                } else if(!inSpan && position >= span.getCharacterStart()) {
+
+                    // Copy everything before the span.
+                    if(buffer != null) {
+                        out.write(buffer, copyFrom, index - copyFrom);
+                    }
+
+                    inSpan = true;
+                    copyFrom = index;
+
+                } else {
+
+                    break;
+
+                }
+
+            }
+
+            return copyFrom;
+
+        }
+
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2021 Mountain Fog, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtnfog.philter.text;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits text into overlapping chunks that end at sentence boundaries when
+ * possible, falling back to whitespace and finally to a hard cut.
+ */
+public class TextChunker {
+
+    private final int chunkSize;
+    private final int overlap;
+
+    public TextChunker(int chunkSize, int overlap) {
+
+        if(overlap >= chunkSize / 2) {
+            throw new IllegalArgumentException("The chunk overlap must be less than half of the chunk size.");
+        }
+
+        this.chunkSize = chunkSize;
+        this.overlap = overlap;
+
+    }
+
+    public List<TextChunk> chunk(String text) {
+
+        final List<TextChunk> chunks = new ArrayList<>();
+
+        int start = 0;
+
+        while(start < text.length()) {
+
+            final int end = findEnd(text, start);
+
+            chunks.add(new TextChunk(start, text.substring(start, end)));
+
+            if(end == text.length()) {
+                break;
+            }
+
+            // Back up into the previous chunk so entities spanning the boundary are seen whole by one of the chunks.
+            start = findStart(text, end - overlap, end);
+
+        }
+
+        return chunks;
+
+    }
+
+    private int findEnd(String text, int start) {
+
+        final int limit = start + chunkSize;
+
+        if(limit >= text.length()) {
+            return text.length();
+        }
+
+        // Don't look for a boundary in the first half of the chunk so chunks stay close to the requested size.
+        final int minimum = start + chunkSize / 2;
+
+        int whitespace = -1;
+
+        for(int i = limit; i > minimum; i--) {
+
+            final char c = text.charAt(i - 1);
+
+            if(Character.isWhitespace(c)) {
+
+                if(i >= 2 && isSentenceTerminator(text.charAt(i - 2))) {
+                    return i;
+                }
+
+                if(whitespace == -1) {
+                    whitespace = i;
+                }
+
+            }
+
+        }
+
+        if(whitespace != -1) {
+            return whitespace;
+        }
+
+        // No boundary found so cut, but never between the two halves of a surrogate pair.
+        return Character.isLowSurrogate(text.charAt(limit)) ? limit - 1 : limit;
+
+    }
+
+    private int findStart(String text, int candidate, int previousEnd) {
+
+        // Move forward to the start of the next word within the overlap so the chunk doesn't begin mid-word.
+        for(int i = candidate; i < previousEnd - 1; i++) {
+
+            if(Character.isWhitespace(text.charAt(i)) && !Character.isWhitespace(text.charAt(i + 1))) {
+                return i + 1;
+            }
+
+        }
+
+        // No word starts in the overlap so keep all of it, but never start between the two halves of a surrogate pair.
+        return Character.isLowSurrogate(text.charAt(candidate)) ? candidate - 1 : candidate;
+
+    }
+
+    private boolean isSentenceTerminator(char c) {
+        return c == '.' || c == '!' || c == '?';
+    }
+
+    public static class TextChunk {
+
+        private final int offset;
+        private final String text;
+
+        public TextChunk(int offset, String text) {
+            this.offset = offset;
+            this.text = text;
+        }
+
+        /**
+         * Gets the character offset of the chunk in the original text.
+         * @return The character offset of the chunk in the original text.
+         */
+        public int getOffset() {
+            return offset;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+    }
+
+}
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2021 Mountain Fog, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtnfog.philter.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DiskResultCacheTest {
+
+    private static final long MB = 1024 * 1024;
+    private static final long TTL_MS = 60 * 60 * 1000;
+
+    @TempDir
+    public File directory;
+
+    @Test
+    public void getsEntriesAfterRestart() throws IOException {
+
+        final DiskResultCache cache = open(16 * MB, TTL_MS);
+        cache.put("key1", "His SSN is {{{REDACTED-ssn}}}.");
+        cache.put("key2", "Größe {{{REDACTED-person}}} 日本");
+        cache.close();
+
+        final DiskResultCache reopened = open(16 * MB, TTL_MS);
+
+        assertEquals(2, reopened.size());
+        assertEquals("His SSN is {{{REDACTED-ssn}}}.", reopened.get("key1"));
+        assertEquals("Größe {{{REDACTED-person}}} 日本", reopened.get("key2"));
+        assertNull(reopened.get("key3"));
+
+        reopened.close();
+
+    }
+
+    @Test
+    public void restartsDoNotLeaveEmptySegments() throws IOException {
+
+        for(int i = 0; i < 5; i++) {
+            open(16 * MB, TTL_MS).close();
+        }
+
+        assertEquals(0, countSegments());
+
+        final DiskResultCache cache = open(16 * MB, TTL_MS);
+        cache.put("key1", "text");
+        cache.close();
+
+        for(int i = 0; i < 5; i++) {
+            final DiskResultCache reopened = open(16 * MB, TTL_MS);
+            reopened.put("key" + (i + 2), "text");
+            reopened.close();
+        }
+
+        // Every restart appends to the same segment.
+        assertEquals(1, countSegments());
+
+        final DiskResultCache reopened = open(16 * MB, TTL_MS);
+        assertEquals(6, reopened.size());
+        reopened.close();
+
+    }
+
+    @Test
+    public void deletesEmptySegmentsOnLoad() throws IOException {
+
+        assertTrue(new File(directory, "segment-0.dat").createNewFile());
+        assertTrue(new File(directory, "segment-1.dat").createNewFile());
+
+        final DiskResultCache cache = open(16 * MB, TTL_MS);
+        cache.close();
+
+        assertEquals(0, countSegments());
+
+    }
+
+    @Test
+    public void rebuildsIndexAndCutsOffPartlyWrittenEntry() throws IOException {
+
+        final DiskResultCache cache = open(16 * MB, TTL_MS);
+        cache.put("key1", "first");
+        cache.put("key2", "second");
+        cache.close();
+
+        // Simulate a crash while an entry was being written: no index and a torn entry at the end of the segment.
+        assertTrue(new File(directory, "index.dat").delete());
+
+        final File segment = new File(directory, "segment-0.dat");
+        final long length = segment.length();
+
+        try(final FileOutputStream out = new FileOutputStream(segment, true)) {
+            out.write(new byte[] {0, 0, 0, 4, 'k', 'e'});
+        }
+
+        final DiskResultCache reopened = open(16 * MB, TTL_MS);
+
+        assertEquals("first", reopened.get("key1"));
+        assertEquals("second", reopened.get("key2"));
+        assertEquals(length, segment.length());
+
+        reopened.put("key3", "third");
+        reopened.close();
+
+        // Remove the index again so the entry appended after the cut is found by scanning.
+        assertTrue(new File(directory, "index.dat").delete());
+
+        final DiskResultCache scanned = open(16 * MB, TTL_MS);
+
+        assertEquals(3, scanned.size());
+        assertEquals("third", scanned.get("key3"));
+        assertEquals(1, countSegments());
+
+        scanned.close();
+
+    }
+
+    @Test
+    public void evictsOldestSegment() throws IOException {
+
+        // Segments are at least 1 MB so 2 MB holds about two segments.
+        final DiskResultCache cache = open(2 * MB, TTL_MS);
+        final Random random = new Random(42);
+
+        for(int i = 0; i < 40; i++) {
+            cache.put("key" + i, randomText(random, 100 * 1024));
+        }
+
+        assertNull(cache.get("key0"));
+        assertEquals(100 * 1024, cache.get("key39").length());
+        assertTrue(countSegments() <= 3);
+
+        cache.close();
+
+    }
+
+    @Test
+    public void expiresEntries() throws IOException {
+
+        final DiskResultCache cache = open(16 * MB, 0);
+        cache.put("key1", "text");
+
+        assertNull(cache.get("key1"));
+
+        cache.close();
+
+    }
+
+    @Test
+    public void ignoresEntriesUntilLoaded() throws IOException {
+
+        final DiskResultCache cache = new DiskResultCache(directory, 16 * MB, MB, TTL_MS);
+        cache.put("key1", "text");
+
+        assertNull(cache.get("key1"));
+
+        cache.load();
+
+        assertNull(cache.get("key1"));
+
+        cache.close();
+
+    }
+
+    private DiskResultCache open(long maxSizeBytes, long ttlMs) throws IOException {
+
+        final DiskResultCache cache = new DiskResultCache(directory, maxSizeBytes, MB, ttlMs);
+        cache.load();
+
+        return cache;
+
+    }
+
+    private int countSegments() {
+
+        final File[] segments = directory.listFiles((dir, name) -> name.startsWith("segment-"));
+
+        return segments == null ? 0 : segments.length;
+
+    }
+
+    private static String randomText(Random random, int length) {
+
+        final StringBuilder sb = new StringBuilder(length);
+
+        for(int i = 0; i < length; i++) {
+            sb.append((char) ('!' + random.nextInt(94)));
+        }
+
+        return sb.toString();
+
+    }
+
+}
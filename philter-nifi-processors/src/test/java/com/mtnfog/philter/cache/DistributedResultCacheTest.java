@@ -0,0 +1,241 @@
+/*
+ * Copyright 2021 Mountain Fog, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtnfog.philter.cache;
+
+import org.apache.nifi.controller.AbstractControllerService;
+import org.apache.nifi.distributed.cache.client.Deserializer;
+import org.apache.nifi.distributed.cache.client.DistributedMapCacheClient;
+import org.apache.nifi.distributed.cache.client.Serializer;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DistributedResultCacheTest {
+
+    private static final long TTL_MS = 60 * 60 * 1000;
+
+    @Test
+    public void getsEntries() throws IOException {
+
+        final DistributedResultCache cache = new DistributedResultCache(new StubMapCacheClient(), 1024, TTL_MS);
+
+        cache.put("k1", "His name is {{{REDACTED-person}}}.");
+        cache.put("k2", "Größe 日本 😀");
+
+        assertEquals("His name is {{{REDACTED-person}}}.", cache.get("k1"));
+        assertEquals("Größe 日本 😀", cache.get("k2"));
+        assertNull(cache.get("k3"));
+
+    }
+
+    @Test
+    public void prefixesKeys() throws IOException {
+
+        final StubMapCacheClient client = new StubMapCacheClient();
+
+        new DistributedResultCache(client, 1024, TTL_MS).put("abc123", "text");
+
+        assertEquals(Collections.singleton("philter-result:abc123"), client.entries.keySet());
+
+        // Other users of the map cache with the same key don't collide with the cache.
+        client.entries.put("abc123", new byte[] {1, 2, 3});
+
+        assertEquals("text", new DistributedResultCache(client, 1024, TTL_MS).get("abc123"));
+
+    }
+
+    @Test
+    public void compressesEntries() throws IOException {
+
+        final StubMapCacheClient client = new StubMapCacheClient();
+        final DistributedResultCache cache = new DistributedResultCache(client, 64 * 1024, TTL_MS);
+
+        final StringBuilder sb = new StringBuilder();
+
+        while(sb.length() < 10000) {
+            sb.append("The patient {{{REDACTED-person}}} was seen on {{{REDACTED-date}}}. ");
+        }
+
+        cache.put("k", sb.toString());
+
+        assertTrue(client.entries.get("philter-result:k").length < sb.length() / 10);
+        assertEquals(sb.toString(), cache.get("k"));
+
+    }
+
+    @Test
+    public void skipsLargeEntries() throws IOException {
+
+        final StubMapCacheClient client = new StubMapCacheClient();
+
+        // The expiration time and the GZIP header alone are larger than this.
+        new DistributedResultCache(client, 16, TTL_MS).put("k", "text");
+
+        assertTrue(client.entries.isEmpty());
+
+    }
+
+    @Test
+    public void ignoresExpiredEntries() throws IOException {
+
+        final StubMapCacheClient client = new StubMapCacheClient();
+
+        new DistributedResultCache(client, 1024, 0).put("k", "text");
+
+        final DistributedResultCache cache = new DistributedResultCache(client, 1024, TTL_MS);
+
+        assertNull(cache.get("k"));
+
+        // The expired entry is replaced by the next put.
+        cache.put("k", "fresh");
+
+        assertEquals("fresh", cache.get("k"));
+
+    }
+
+    @Test
+    public void keepsFreshEntryPutWhileExpiredEntryIsRead() throws IOException {
+
+        final StubMapCacheClient client = new StubMapCacheClient();
+        final DistributedResultCache otherNode = new DistributedResultCache(client, 1024, TTL_MS);
+
+        new DistributedResultCache(client, 1024, 0).put("k", "expired");
+
+        // Another node puts a fresh value right after this node reads the expired one.
+        client.afterGet = () -> otherNode.put("k", "fresh");
+
+        final DistributedResultCache cache = new DistributedResultCache(client, 1024, TTL_MS);
+
+        assertNull(cache.get("k"));
+
+        client.afterGet = null;
+
+        assertEquals("fresh", cache.get("k"));
+
+    }
+
+    /**
+     * A map cache client that holds its entries in memory.
+     */
+    private static class StubMapCacheClient extends AbstractControllerService implements DistributedMapCacheClient {
+
+        private final Map<String, byte[]> entries = new HashMap<>();
+        private CacheAction afterGet;
+
+        @Override
+        public <K, V> boolean putIfAbsent(K key, V value, Serializer<K> keySerializer, Serializer<V> valueSerializer) throws IOException {
+
+            if(containsKey(key, keySerializer)) {
+                return false;
+            }
+
+            put(key, value, keySerializer, valueSerializer);
+
+            return true;
+
+        }
+
+        @Override
+        public <K, V> V getAndPutIfAbsent(K key, V value, Serializer<K> keySerializer, Serializer<V> valueSerializer,
+                                          Deserializer<V> valueDeserializer) throws IOException {
+
+            final V existing = get(key, keySerializer, valueDeserializer);
+
+            if(existing == null) {
+                put(key, value, keySerializer, valueSerializer);
+            }
+
+            return existing;
+
+        }
+
+        @Override
+        public <K> boolean containsKey(K key, Serializer<K> keySerializer) throws IOException {
+            return entries.containsKey(serialize(key, keySerializer));
+        }
+
+        @Override
+        public <K, V> void put(K key, V value, Serializer<K> keySerializer, Serializer<V> valueSerializer) throws IOException {
+
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+            valueSerializer.serialize(value, out);
+            entries.put(serialize(key, keySerializer), out.toByteArray());
+
+        }
+
+        @Override
+        public <K, V> V get(K key, Serializer<K> keySerializer, Deserializer<V> valueDeserializer) throws IOException {
+
+            final V value = valueDeserializer.deserialize(entries.get(serialize(key, keySerializer)));
+
+            if(afterGet != null) {
+                afterGet.run();
+            }
+
+            return value;
+
+        }
+
+        @Override
+        public void close() {
+            // Nothing to close.
+        }
+
+        @Override
+        public <K> boolean remove(K key, Serializer<K> keySerializer) throws IOException {
+            return entries.remove(serialize(key, keySerializer)) != null;
+        }
+
+        @Override
+        public long removeByPattern(String regex) {
+
+            final int size = entries.size();
+
+            entries.keySet().removeIf(key -> key.matches(regex));
+
+            return size - entries.size();
+
+        }
+
+        private static <K> String serialize(K key, Serializer<K> keySerializer) throws IOException {
+
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+            keySerializer.serialize(key, out);
+
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+
+        }
+
+    }
+
+    private interface CacheAction {
+
+        void run() throws IOException;
+
+    }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright 2021 Mountain Fog, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtnfog.philter.cache;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class FilterResultCacheTest {
+
+    private static final long TTL_MS = 60 * 60 * 1000;
+
+    // The size of an entry with a two character key and three character text.
+    private static final long ENTRY_SIZE = 96 + 2 * (2 + 3);
+
+    @Test
+    public void getsEntries() {
+
+        final FilterResultCache cache = new FilterResultCache(1024, 1024, TTL_MS);
+
+        cache.put("k1", "abc");
+        cache.put("k2", "def");
+
+        assertEquals("abc", cache.get("k1"));
+        assertEquals("def", cache.get("k2"));
+        assertNull(cache.get("k3"));
+        assertEquals(2, cache.size());
+        assertEquals(2 * ENTRY_SIZE, cache.getSizeBytes());
+
+    }
+
+    @Test
+    public void replacesEntries() {
+
+        final FilterResultCache cache = new FilterResultCache(1024, 1024, TTL_MS);
+
+        cache.put("k1", "abc");
+        cache.put("k1", "abcdef");
+
+        assertEquals("abcdef", cache.get("k1"));
+        assertEquals(1, cache.size());
+        assertEquals(ENTRY_SIZE + 2 * 3, cache.getSizeBytes());
+
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedEntries() {
+
+        final FilterResultCache cache = new FilterResultCache(3 * ENTRY_SIZE, 1024, TTL_MS);
+
+        cache.put("k1", "abc");
+        cache.put("k2", "abc");
+        cache.put("k3", "abc");
+
+        // Using k1 makes k2 the least recently used.
+        cache.get("k1");
+
+        cache.put("k4", "abc");
+
+        assertEquals(3, cache.size());
+        assertEquals(3 * ENTRY_SIZE, cache.getSizeBytes());
+        assertNull(cache.get("k2"));
+        assertEquals("abc", cache.get("k1"));
+        assertEquals("abc", cache.get("k3"));
+        assertEquals("abc", cache.get("k4"));
+
+    }
+
+    @Test
+    public void skipsLargeEntries() {
+
+        final FilterResultCache cache = new FilterResultCache(1024, ENTRY_SIZE, TTL_MS);
+
+        cache.put("k1", "abc");
+        cache.put("k2", "abcd");
+
+        assertEquals("abc", cache.get("k1"));
+        assertNull(cache.get("k2"));
+        assertEquals(1, cache.size());
+
+    }
+
+    @Test
+    public void expiresEntries() {
+
+        final FilterResultCache cache = new FilterResultCache(1024, 1024, 0);
+
+        cache.put("k1", "abc");
+
+        assertNull(cache.get("k1"));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getSizeBytes());
+
+    }
+
+}
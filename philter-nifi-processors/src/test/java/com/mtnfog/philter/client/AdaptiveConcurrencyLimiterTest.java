@@ -0,0 +1,165 @@
+/*
+ * Copyright 2021 Mountain Fog, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtnfog.philter.client;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AdaptiveConcurrencyLimiterTest {
+
+    @Test
+    public void keepsInitialLimitWithinBounds() {
+
+        assertEquals(4, new AdaptiveConcurrencyLimiter(1, 4, 16).getLimit());
+        assertEquals(16, new AdaptiveConcurrencyLimiter(100, 4, 16).getLimit());
+        assertEquals(8, new AdaptiveConcurrencyLimiter(8, 4, 16).getLimit());
+
+    }
+
+    @Test
+    public void limitsRequestsInFlight() {
+
+        final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 16);
+
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        assertEquals(2, limiter.getInFlight());
+
+        limiter.release();
+
+        assertEquals(1, limiter.getInFlight());
+        assertTrue(limiter.tryAcquire());
+
+    }
+
+    @Test
+    public void backsOffWhenRequestsFail() {
+
+        final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(20, 4, 100);
+
+        limiter.onRequestCompleted(0, 1000, false);
+
+        assertEquals(18, limiter.getLimit());
+
+        for(int i = 0; i < 100; i++) {
+            limiter.onRequestCompleted(0, 1000, false);
+        }
+
+        assertEquals(4, limiter.getLimit());
+
+    }
+
+    @Test
+    public void growsWhileLatencyStaysLow() {
+
+        final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1, 12);
+
+        acquire(limiter, 10);
+
+        // The first sample is taken as the unloaded latency.
+        limiter.onRequestCompleted(0, 1_000_000, true);
+        assertEquals(10, limiter.getLimit());
+
+        limiter.onRequestCompleted(0, 1_100_000, true);
+        assertEquals(11, limiter.getLimit());
+
+        for(int i = 0; i < 10; i++) {
+            limiter.onRequestCompleted(0, 1_100_000, true);
+        }
+
+        assertEquals(12, limiter.getLimit());
+
+    }
+
+    @Test
+    public void shrinksWhenLatencyGrows() {
+
+        final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(20, 4, 100);
+
+        acquire(limiter, 20);
+
+        limiter.onRequestCompleted(0, 1_000_000, true);
+
+        // Half of the requests in flight are estimated to be queued.
+        limiter.onRequestCompleted(0, 2_000_000, true);
+
+        assertEquals(19, limiter.getLimit());
+
+    }
+
+    @Test
+    public void holdsLimitBetweenThresholds() {
+
+        final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(20, 4, 100);
+
+        acquire(limiter, 20);
+
+        limiter.onRequestCompleted(0, 1_000_000, true);
+
+        // A fifth of the requests in flight, 4, are estimated to be queued.
+        limiter.onRequestCompleted(0, 1_250_000, true);
+
+        assertEquals(20, limiter.getLimit());
+
+    }
+
+    @Test
+    public void doesNotGrowUnderLightLoad() {
+
+        final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1, 100);
+
+        acquire(limiter, 4);
+
+        for(int i = 0; i < 10; i++) {
+            limiter.onRequestCompleted(0, 1_000_000, true);
+        }
+
+        assertEquals(10, limiter.getLimit());
+
+    }
+
+    @Test
+    public void halvesLimitToMeasureUnloadedLatency() {
+
+        final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(40, 4, 40);
+
+        acquire(limiter, 40);
+
+        for(int i = 0; i < 999; i++) {
+            limiter.onRequestCompleted(0, 1_000_000, true);
+        }
+
+        assertEquals(40, limiter.getLimit());
+
+        limiter.onRequestCompleted(0, 1_000_000, true);
+
+        assertEquals(20, limiter.getLimit());
+
+    }
+
+    private static void acquire(AdaptiveConcurrencyLimiter limiter, int permits) {
+
+        for(int i = 0; i < permits; i++) {
+            assertTrue(limiter.tryAcquire());
+        }
+
+    }
+
+}
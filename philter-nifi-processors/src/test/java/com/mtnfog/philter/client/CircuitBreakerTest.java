@@ -0,0 +1,230 @@
+/*
+ * Copyright 2021 Mountain Fog, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtnfog.philter.client;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class CircuitBreakerTest {
+
+    private static final long LONG_OPEN_MS = 60 * 60 * 1000;
+
+    @Test
+    public void permitsRequestsWhileClosed() {
+
+        final CircuitBreaker breaker = new CircuitBreaker(10, 50, LONG_OPEN_MS);
+
+        for(int i = 0; i < 20; i++) {
+            assertEquals(CircuitBreaker.Permission.PERMITTED, breaker.tryAcquire());
+            breaker.onRequestCompleted(System.nanoTime(), 1000, i % 3 != 0);
+        }
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+    }
+
+    @Test
+    public void waitsForFullWindowBeforeOpening() {
+
+        final CircuitBreaker breaker = new CircuitBreaker(10, 50, LONG_OPEN_MS);
+
+        for(int i = 0; i < 9; i++) {
+            breaker.onRequestCompleted(System.nanoTime(), 1000, false);
+        }
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        breaker.onRequestCompleted(System.nanoTime(), 1000, false);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+    }
+
+    @Test
+    public void opensAtFailureRateThreshold() {
+
+        final CircuitBreaker breaker = new CircuitBreaker(10, 50, LONG_OPEN_MS);
+
+        for(int i = 0; i < 10; i++) {
+            breaker.onRequestCompleted(System.nanoTime(), 1000, i < 4 || i >= 8);
+        }
+
+        // 4 of the last 10 requests failed.
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        breaker.onRequestCompleted(System.nanoTime(), 1000, false);
+
+        // The oldest success left the window so 5 of the last 10 requests failed.
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+    }
+
+    @Test
+    public void deniesRequestsWhileOpen() {
+
+        final CircuitBreaker breaker = open(LONG_OPEN_MS);
+
+        assertEquals(CircuitBreaker.Permission.DENIED, breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+    }
+
+    @Test
+    public void closesWhenProbeSucceeds() {
+
+        final CircuitBreaker breaker = open(0);
+
+        assertEquals(CircuitBreaker.Permission.PROBE, breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        breaker.onRequestCompleted(System.nanoTime(), 1000, true);
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(CircuitBreaker.Permission.PERMITTED, breaker.tryAcquire());
+
+        // The window starts over so a few failures don't open the breaker again.
+        for(int i = 0; i < 9; i++) {
+            breaker.onRequestCompleted(System.nanoTime(), 1000, false);
+        }
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+    }
+
+    @Test
+    public void opensAgainWhenProbeFails() {
+
+        final CircuitBreaker breaker = open(0);
+
+        assertEquals(CircuitBreaker.Permission.PROBE, breaker.tryAcquire());
+
+        breaker.onRequestCompleted(System.nanoTime(), 1000, false);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+    }
+
+    @Test
+    public void ignoresRequestsSentBeforeProbe() {
+
+        final long sentBeforeOpening = System.nanoTime();
+        final CircuitBreaker breaker = open(0);
+
+        assertEquals(CircuitBreaker.Permission.PROBE, breaker.tryAcquire());
+
+        // Requests that were in flight when the breaker opened complete while the probe is out.
+        breaker.onRequestCompleted(sentBeforeOpening, 1000, true);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        breaker.onRequestCompleted(sentBeforeOpening, 1000, false);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        breaker.onRequestCompleted(System.nanoTime(), 1000, false);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+    }
+
+    @Test
+    public void ignoresReplacedProbe() throws InterruptedException {
+
+        final CircuitBreaker breaker = open(200);
+
+        Thread.sleep(250);
+
+        assertEquals(CircuitBreaker.Permission.PROBE, breaker.tryAcquire());
+
+        final long replacedProbeSent = System.nanoTime();
+
+        Thread.sleep(250);
+
+        assertEquals(CircuitBreaker.Permission.PROBE, breaker.tryAcquire());
+
+        breaker.onRequestCompleted(replacedProbeSent, 1000, true);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+        breaker.onRequestCompleted(System.nanoTime(), 1000, true);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+    }
+
+    @Test
+    public void ignoresCompletionsWithoutProbe() throws InterruptedException {
+
+        final CircuitBreaker breaker = open(200);
+
+        Thread.sleep(250);
+
+        // The open duration has passed but no probe has been let through.
+        breaker.onRequestCompleted(System.nanoTime(), 1000, true);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        assertEquals(CircuitBreaker.Permission.PROBE, breaker.tryAcquire());
+        breaker.cancelProbe();
+
+        breaker.onRequestCompleted(System.nanoTime(), 1000, true);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+
+    }
+
+    @Test
+    public void letsOneProbeThroughAtATime() throws InterruptedException {
+
+        final CircuitBreaker breaker = open(200);
+
+        Thread.sleep(250);
+
+        assertEquals(CircuitBreaker.Permission.PROBE, breaker.tryAcquire());
+        assertEquals(CircuitBreaker.Permission.DENIED, breaker.tryAcquire());
+
+        // A probe that is given back goes to the next caller.
+        breaker.cancelProbe();
+
+        assertEquals(CircuitBreaker.Permission.PROBE, breaker.tryAcquire());
+        assertEquals(CircuitBreaker.Permission.DENIED, breaker.tryAcquire());
+
+    }
+
+    @Test
+    public void replacesProbeThatNeverCompletes() throws InterruptedException {
+
+        final CircuitBreaker breaker = open(200);
+
+        Thread.sleep(250);
+
+        assertEquals(CircuitBreaker.Permission.PROBE, breaker.tryAcquire());
+
+        Thread.sleep(250);
+
+        assertEquals(CircuitBreaker.Permission.PROBE, breaker.tryAcquire());
+
+    }
+
+    private static CircuitBreaker open(long openMs) {
+
+        final CircuitBreaker breaker = new CircuitBreaker(10, 50, openMs);
+
+        for(int i = 0; i < 10; i++) {
+            breaker.onRequestCompleted(System.nanoTime(), 1000, false);
+        }
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        return breaker;
+
+    }
+
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2021 Mountain Fog, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtnfog.philter.client;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PhilterEndpointsTest {
+
+    private static final long EJECTION_MS = 60 * 60 * 1000;
+
+    @Test
+    public void parsesEndpoints() {
+
+        assertEquals(Arrays.asList("https://a:8080", "https://b:8080"), PhilterEndpoints.parse(" https://a:8080, ,https://b:8080 ,"));
+
+    }
+
+    @Test
+    public void requiresEndpoint() {
+
+        assertThrows(IllegalArgumentException.class, () -> new PhilterEndpoints(Collections.emptyList(), PhilterEndpoints.Strategy.LEAST_OUTSTANDING_REQUESTS));
+
+    }
+
+    @Test
+    public void countsOutstandingRequests() {
+
+        final PhilterEndpoints endpoints = new PhilterEndpoints(Collections.singletonList("https://a:8080"), PhilterEndpoints.Strategy.LEAST_OUTSTANDING_REQUESTS);
+
+        final PhilterEndpoint endpoint = endpoints.start();
+        endpoints.start();
+
+        assertEquals(2, endpoint.getOutstandingRequests());
+
+        endpoints.complete(endpoint, 1000, true);
+
+        assertEquals(1, endpoint.getOutstandingRequests());
+
+    }
+
+    @Test
+    public void averagesLatency() {
+
+        final PhilterEndpoints endpoints = new PhilterEndpoints(Collections.singletonList("https://a:8080"), PhilterEndpoints.Strategy.POWER_OF_TWO_CHOICES);
+        final PhilterEndpoint endpoint = endpoints.getEndpoints().get(0);
+
+        endpoints.complete(endpoints.start(), 1000, true);
+
+        assertEquals(1000, endpoint.getEwmaLatencyNanos(), 0.001);
+
+        endpoints.complete(endpoints.start(), 2000, true);
+
+        assertEquals(0.3 * 2000 + 0.7 * 1000, endpoint.getEwmaLatencyNanos(), 0.001);
+
+    }
+
+    @Test
+    public void sendsToLeastOutstandingEndpoint() {
+
+        final PhilterEndpoints endpoints = new PhilterEndpoints(Arrays.asList("https://a:8080", "https://b:8080"),
+                PhilterEndpoints.Strategy.LEAST_OUTSTANDING_REQUESTS);
+
+        final PhilterEndpoint first = endpoints.start();
+        final PhilterEndpoint second = endpoints.start();
+
+        assertNotSame(first, second);
+
+        endpoints.complete(second, 1000, true);
+
+        assertSame(second, endpoints.start());
+
+    }
+
+    @Test
+    public void isNotEjectedUntilFailing() {
+
+        final PhilterEndpoint endpoint = new PhilterEndpoint("https://a:8080");
+
+        // System.nanoTime() may be negative.
+        assertFalse(endpoint.isEjected(System.nanoTime()));
+        assertFalse(endpoint.isEjected(-1));
+        assertFalse(endpoint.isEjected(Long.MIN_VALUE));
+
+    }
+
+    @Test
+    public void ejectsRepeatedlyFailingEndpoint() {
+
+        final PhilterEndpoints endpoints = new PhilterEndpoints(Arrays.asList("https://a:8080", "https://b:8080"),
+                PhilterEndpoints.Strategy.POWER_OF_TWO_CHOICES, 3, EJECTION_MS);
+
+        final PhilterEndpoint failing = endpoints.getEndpoints().get(0);
+        final PhilterEndpoint healthy = endpoints.getEndpoints().get(1);
+
+        fail(endpoints, failing, 2);
+
+        // A success starts the count of consecutive failures over.
+        endpoints.complete(failing, 1000, true);
+        fail(endpoints, failing, 2);
+
+        assertFalse(failing.isEjected(System.nanoTime()));
+
+        fail(endpoints, failing, 1);
+
+        assertTrue(failing.isEjected(System.nanoTime()));
+        assertFalse(failing.isEjected(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(EJECTION_MS)));
+
+        for(int i = 0; i < 20; i++) {
+            assertSame(healthy, endpoints.start());
+        }
+
+    }
+
+    @Test
+    public void triesEjectedEndpointsWhenAllAreEjected() {
+
+        final PhilterEndpoints endpoints = new PhilterEndpoints(Arrays.asList("https://a:8080", "https://b:8080"),
+                PhilterEndpoints.Strategy.LEAST_OUTSTANDING_REQUESTS, 1, EJECTION_MS);
+
+        for(final PhilterEndpoint endpoint : endpoints.getEndpoints()) {
+            fail(endpoints, endpoint, 1);
+        }
+
+        assertTrue(endpoints.getEndpoints().contains(endpoints.start()));
+
+    }
+
+    private static void fail(PhilterEndpoints endpoints, PhilterEndpoint endpoint, int times) {
+
+        for(int i = 0; i < times; i++) {
+            endpoint.onRequestStarted();
+            endpoints.complete(endpoint, 1000, false);
+        }
+
+    }
+
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright 2021 Mountain Fog, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtnfog.philter.client;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RequestCoalescerTest {
+
+    private static final int WAITERS = 4;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(WAITERS + 1);
+
+    @AfterEach
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void sharesRequestBetweenConcurrentCallers() throws Exception {
+
+        final RequestCoalescer<String> coalescer = new RequestCoalescer<>();
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch finish = new CountDownLatch(1);
+
+        final Future<String> first = executor.submit(() -> coalescer.execute("key", () -> {
+            calls.incrementAndGet();
+            started.countDown();
+            await(finish);
+            return "filtered";
+        }));
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        final List<Future<String>> waiters = submitWaiters(coalescer, "key", calls);
+
+        finish.countDown();
+
+        assertEquals("filtered", first.get(5, TimeUnit.SECONDS));
+
+        for(final Future<String> waiter : waiters) {
+            assertEquals("filtered", waiter.get(5, TimeUnit.SECONDS));
+        }
+
+        assertEquals(1, calls.get());
+
+    }
+
+    @Test
+    public void failsEveryCallerWhenRequestFails() throws Exception {
+
+        final RequestCoalescer<String> coalescer = new RequestCoalescer<>();
+        final AtomicInteger calls = new AtomicInteger();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch finish = new CountDownLatch(1);
+
+        final Future<String> first = executor.submit(() -> coalescer.execute("key", () -> {
+            calls.incrementAndGet();
+            started.countDown();
+            await(finish);
+            throw new IOException("Philter is unavailable.");
+        }));
+
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        final List<Future<String>> waiters = submitWaiters(coalescer, "key", calls);
+
+        finish.countDown();
+
+        assertCause(IOException.class, first);
+
+        for(final Future<String> waiter : waiters) {
+            assertCause(IOException.class, waiter);
+        }
+
+        assertEquals(1, calls.get());
+
+    }
+
+    @Test
+    public void sendsAgainAfterRequestCompletes() throws IOException {
+
+        final RequestCoalescer<String> coalescer = new RequestCoalescer<>();
+        final AtomicInteger calls = new AtomicInteger();
+
+        assertEquals("1", coalescer.execute("key", () -> String.valueOf(calls.incrementAndGet())));
+        assertEquals("2", coalescer.execute("key", () -> String.valueOf(calls.incrementAndGet())));
+
+        assertThrows(IOException.class, () -> coalescer.execute("key", () -> {
+            throw new IOException("Philter is unavailable.");
+        }));
+
+        // A failed request is not shared with later callers either.
+        assertEquals("3", coalescer.execute("key", () -> String.valueOf(calls.incrementAndGet())));
+
+    }
+
+    @Test
+    public void doesNotShareRequestsWithDifferentKeys() throws IOException {
+
+        final RequestCoalescer<String> coalescer = new RequestCoalescer<>();
+
+        // A request for another key made while the first is in flight is sent rather than shared.
+        assertEquals("ab", coalescer.execute("a", () -> "a" + coalescer.execute("b", () -> "b")));
+
+    }
+
+    @Test
+    public void sharesAsyncRequestBetweenCallers() throws Exception {
+
+        final RequestCoalescer<String> coalescer = new RequestCoalescer<>();
+        final AtomicInteger calls = new AtomicInteger();
+        final CompletableFuture<String> response = new CompletableFuture<>();
+
+        final CompletableFuture<String> first = coalescer.executeAsync("key", () -> {
+            calls.incrementAndGet();
+            return response;
+        });
+
+        final CompletableFuture<String> second = coalescer.executeAsync("key", () -> {
+            calls.incrementAndGet();
+            return CompletableFuture.completedFuture("not shared");
+        });
+
+        assertSame(first, second);
+        assertFalse(first.isDone());
+
+        response.complete("filtered");
+
+        assertEquals("filtered", first.get(5, TimeUnit.SECONDS));
+        assertEquals("filtered", second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, calls.get());
+
+    }
+
+    @Test
+    public void failsEveryAsyncCallerWhenRequestFails() {
+
+        final RequestCoalescer<String> coalescer = new RequestCoalescer<>();
+        final CompletableFuture<String> response = new CompletableFuture<>();
+
+        final CompletableFuture<String> first = coalescer.executeAsync("key", () -> response);
+        final CompletableFuture<String> second = coalescer.executeAsync("key", () -> CompletableFuture.completedFuture("not shared"));
+
+        response.completeExceptionally(new IOException("Philter is unavailable."));
+
+        assertCause(IOException.class, first);
+        assertCause(IOException.class, second);
+
+    }
+
+    @Test
+    public void sendsAsyncAgainAfterRequestCompletes() throws Exception {
+
+        final RequestCoalescer<String> coalescer = new RequestCoalescer<>();
+        final AtomicInteger calls = new AtomicInteger();
+
+        assertEquals("1", coalescer.executeAsync("key", () -> CompletableFuture.completedFuture(String.valueOf(calls.incrementAndGet()))).get());
+
+        final CompletableFuture<String> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IOException("Philter is unavailable."));
+
+        assertCause(IOException.class, coalescer.executeAsync("key", () -> failed));
+        assertEquals("2", coalescer.executeAsync("key", () -> CompletableFuture.completedFuture(String.valueOf(calls.incrementAndGet()))).get());
+
+    }
+
+    @Test
+    public void sendsAsyncAgainAfterRequestFailsToStart() throws Exception {
+
+        final RequestCoalescer<String> coalescer = new RequestCoalescer<>();
+
+        assertThrows(IllegalStateException.class, () -> coalescer.executeAsync("key", () -> {
+            throw new IllegalStateException("The client is closed.");
+        }));
+
+        assertEquals("filtered", coalescer.executeAsync("key", () -> CompletableFuture.completedFuture("filtered")).get());
+
+    }
+
+    /**
+     * Starts callers that share the request already in flight for a key, and waits until each of
+     * them is waiting for it.
+     */
+    private List<Future<String>> submitWaiters(RequestCoalescer<String> coalescer, String key, AtomicInteger calls) throws InterruptedException {
+
+        final List<Thread> threads = new ArrayList<>();
+        final List<Future<String>> waiters = new ArrayList<>();
+
+        for(int i = 0; i < WAITERS; i++) {
+
+            waiters.add(executor.submit(() -> {
+
+                synchronized(threads) {
+                    threads.add(Thread.currentThread());
+                    threads.notifyAll();
+                }
+
+                return coalescer.execute(key, () -> {
+                    calls.incrementAndGet();
+                    return "not shared";
+                });
+
+            }));
+
+        }
+
+        synchronized(threads) {
+            while(threads.size() < WAITERS) {
+                threads.wait(5000);
+            }
+        }
+
+        final long deadline = System.currentTimeMillis() + 5000;
+
+        for(final Thread thread : threads) {
+            while(thread.getState() != Thread.State.WAITING && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+        }
+
+        return waiters;
+
+    }
+
+    private static void await(CountDownLatch latch) throws IOException {
+
+        try {
+            latch.await();
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException(ex);
+        }
+
+    }
+
+    private static void assertCause(Class<? extends Throwable> expected, Future<String> future) {
+
+        final ExecutionException ex = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+
+        assertEquals(expected, ex.getCause().getClass());
+
+    }
+
+}
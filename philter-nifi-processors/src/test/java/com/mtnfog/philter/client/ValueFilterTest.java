@@ -0,0 +1,151 @@
+/*
+ * Copyright 2021 Mountain Fog, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtnfog.philter.client;
+
+import com.mtnfog.philter.cache.FilterResultCache;
+import com.mtnfog.philter.model.FilterResponse;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ValueFilterTest {
+
+    @Test
+    public void sendsRepeatedValueOncePerFlowFile() throws IOException {
+
+        final StubPhilterHttpClient client = new StubPhilterHttpClient();
+        final ValueFilter valueFilter = new ValueFilter(client, "default", "ctx", 0, memo());
+
+        final List<String> filtered = valueFilter.filter(Arrays.asList("John", "Jane", "John", "John"));
+
+        assertEquals(Arrays.asList("[default:JOHN]", "[default:JANE]", "[default:JOHN]", "[default:JOHN]"), filtered);
+        assertEquals(Arrays.asList("John", "Jane"), client.sent);
+        assertEquals(2, valueFilter.getRequests());
+        assertEquals(2, valueFilter.getMemoHits());
+
+    }
+
+    @Test
+    public void sendsRepeatedValueOnceAcrossFlowFiles() throws IOException {
+
+        final StubPhilterHttpClient client = new StubPhilterHttpClient();
+        final FilterResultCache memo = memo();
+
+        new ValueFilter(client, "default", "ctx", 0, memo).filter(Arrays.asList("John", "Jane"));
+
+        // A later flowfile with the same values reuses their filtered values.
+        final ValueFilter valueFilter = new ValueFilter(client, "default", "ctx", 0, memo);
+
+        assertEquals(Arrays.asList("[default:JANE]", "[default:BOB]", "[default:JOHN]"), valueFilter.filter(Arrays.asList("Jane", "Bob", "John")));
+        assertEquals(Arrays.asList("John", "Jane", "Bob"), client.sent);
+        assertEquals(1, valueFilter.getRequests());
+        assertEquals(2, valueFilter.getMemoHits());
+
+    }
+
+    @Test
+    public void doesNotReuseValuesFilteredWithAnotherProfile() throws IOException {
+
+        final StubPhilterHttpClient client = new StubPhilterHttpClient();
+        final FilterResultCache memo = memo();
+
+        new ValueFilter(client, "names", "ctx", 0, memo).filter(Collections.singletonList("John"));
+
+        final ValueFilter valueFilter = new ValueFilter(client, "ssns", "ctx", 0, memo);
+
+        assertEquals(Collections.singletonList("[ssns:JOHN]"), valueFilter.filter(Collections.singletonList("John")));
+        assertEquals(Arrays.asList("names", "ssns"), client.profiles);
+        assertEquals(0, valueFilter.getMemoHits());
+
+    }
+
+    @Test
+    public void doesNotReuseValuesFilteredInAnotherContext() throws IOException {
+
+        final StubPhilterHttpClient client = new StubPhilterHttpClient();
+        final FilterResultCache memo = memo();
+
+        new ValueFilter(client, "default", "ctx1", 0, memo).filter(Collections.singletonList("John"));
+
+        final ValueFilter valueFilter = new ValueFilter(client, "default", "ctx2", 0, memo);
+
+        valueFilter.filter(Collections.singletonList("John"));
+
+        assertEquals(Arrays.asList("John", "John"), client.sent);
+        assertEquals(0, valueFilter.getMemoHits());
+
+    }
+
+    @Test
+    public void sendsEveryValueWithoutMemo() throws IOException {
+
+        final StubPhilterHttpClient client = new StubPhilterHttpClient();
+        final ValueFilter valueFilter = new ValueFilter(client, "default", "ctx", 0, null);
+
+        valueFilter.filter(Arrays.asList("John", "John"));
+        valueFilter.filter(Collections.singletonList("John"));
+
+        assertEquals(Arrays.asList("John", "John", "John"), client.sent);
+        assertEquals(0, valueFilter.getMemoHits());
+
+    }
+
+    @Test
+    public void doesNotSendBlankValues() throws IOException {
+
+        final StubPhilterHttpClient client = new StubPhilterHttpClient();
+        final ValueFilter valueFilter = new ValueFilter(client, "default", "ctx", 0, memo());
+
+        assertEquals(Arrays.asList("", " ", null), valueFilter.filter(Arrays.asList("", " ", null)));
+        assertEquals(0, client.sent.size());
+
+    }
+
+    private static FilterResultCache memo() {
+        return new FilterResultCache(1024 * 1024, 1024, 60 * 1000);
+    }
+
+    /**
+     * Answers each request with the filter profile and the upper-cased text, and records what was sent.
+     */
+    private static class StubPhilterHttpClient extends PhilterHttpClient {
+
+        private final List<String> sent = new ArrayList<>();
+        private final List<String> profiles = new ArrayList<>();
+
+        private StubPhilterHttpClient() {
+            super(null, null);
+        }
+
+        @Override
+        public FilterResponse filter(String context, String documentId, String filterProfileName, String text) {
+
+            sent.add(text);
+            profiles.add(filterProfileName);
+
+            return new FilterResponse("[" + filterProfileName + ":" + text.toUpperCase() + "]", context, documentId);
+
+        }
+
+    }
+
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright 2021 Mountain Fog, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtnfog.philter.json;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JsonPathTest {
+
+    @Test
+    public void parsesSteps() {
+
+        final JsonPath path = JsonPath.parse(" $.patients[*].first name[*] ");
+
+        assertEquals("$.patients[*].first name[*]", path.toString());
+        assertEquals(4, path.getLength());
+        assertEquals("patients", path.getName(0));
+        assertFalse(path.isEveryElement(0));
+        assertTrue(path.isEveryElement(1));
+        assertNull(path.getName(1));
+        assertEquals("first name", path.getName(2));
+        assertTrue(path.isEveryElement(3));
+
+    }
+
+    @Test
+    public void parsesRoot() {
+
+        assertEquals(0, JsonPath.parse("$").getLength());
+        assertEquals(1, JsonPath.parse("$[*]").getLength());
+
+    }
+
+    @Test
+    public void parsesList() {
+
+        final List<JsonPath> paths = JsonPath.parseList("$.a, ,$.b[*] ,");
+
+        assertEquals(2, paths.size());
+        assertEquals("$.a", paths.get(0).toString());
+        assertEquals("$.b[*]", paths.get(1).toString());
+
+    }
+
+    @Test
+    public void rejectsUnsupportedPaths() {
+
+        for(final String path : new String[] {"", "a", "/a/b", "$a", "$.", "$.a.", "$..a", "$.*", "$[0]", "$.a[1].b", "$['a']", "$[\"a\"]",
+                "$.a[*", "$.a]", "$.a[?(@.b)]"}) {
+            assertThrows(IllegalArgumentException.class, () -> JsonPath.parse(path), path);
+        }
+
+    }
+
+    @Test
+    public void rejectsEmptyList() {
+
+        assertThrows(IllegalArgumentException.class, () -> JsonPath.parseList(" , "));
+
+    }
+
+}
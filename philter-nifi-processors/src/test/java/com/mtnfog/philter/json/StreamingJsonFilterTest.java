@@ -0,0 +1,215 @@
+/*
+ * Copyright 2021 Mountain Fog, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtnfog.philter.json;
+
+import com.mtnfog.philter.client.ValueFilter;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class StreamingJsonFilterTest {
+
+    @Test
+    public void filtersOnlySelectedValues() throws IOException {
+
+        final RedactingValueFilter valueFilter = new RedactingValueFilter();
+
+        final String filtered = filter("{\"name\":\"John Smith\",\"note\":\"John Smith\",\"age\":42}", valueFilter, "$.name");
+
+        assertEquals("{\"name\":\"{{{REDACTED}}}\",\"note\":\"John Smith\",\"age\":42}", filtered);
+        assertEquals(Arrays.asList("John Smith"), valueFilter.values);
+
+    }
+
+    @Test
+    public void filtersNestedPaths() throws IOException {
+
+        final String json = "{\"patient\":{\"name\":\"John\",\"address\":{\"city\":\"Springfield\",\"zip\":\"12345\"}},\"city\":\"Shelbyville\"}";
+
+        final String filtered = filter(json, new RedactingValueFilter(), "$.patient.name, $.patient.address.city");
+
+        assertEquals("{\"patient\":{\"name\":\"{{{REDACTED}}}\",\"address\":{\"city\":\"{{{REDACTED}}}\",\"zip\":\"12345\"}},\"city\":\"Shelbyville\"}", filtered);
+
+    }
+
+    @Test
+    public void filtersEveryArrayElement() throws IOException {
+
+        final String json = "{\"patients\":[{\"name\":\"John\",\"id\":1},{\"name\":\"Jane\",\"id\":2},{\"id\":3}],\"names\":[\"Bob\",\"Alice\"]}";
+
+        final String filtered = filter(json, new RedactingValueFilter(), "$.patients[*].name,$.names[*]");
+
+        assertEquals("{\"patients\":[{\"name\":\"{{{REDACTED}}}\",\"id\":1},{\"name\":\"{{{REDACTED}}}\",\"id\":2},{\"id\":3}],"
+                + "\"names\":[\"{{{REDACTED}}}\",\"{{{REDACTED}}}\"]}", filtered);
+
+    }
+
+    @Test
+    public void copiesOtherValuesUnchanged() throws IOException {
+
+        final String json = "{\"a\":1.50,\"b\":1e3,\"c\":true,\"d\":null,\"e\":[],\"f\":{},\"g\":\"Größe \\\"日本\\\"\",\"h\":\"x\"}";
+
+        final String filtered = filter(json, new RedactingValueFilter(), "$.h");
+
+        assertEquals("{\"a\":1.50,\"b\":1e3,\"c\":true,\"d\":null,\"e\":[],\"f\":{},\"g\":\"Größe \\\"日本\\\"\",\"h\":\"{{{REDACTED}}}\"}", filtered);
+
+    }
+
+    @Test
+    public void filtersTopLevelString() throws IOException {
+
+        assertEquals("\"{{{REDACTED}}}\"", filter("\"John Smith\"", new RedactingValueFilter(), "$"));
+
+    }
+
+    @Test
+    public void batchesValuesByTargetSize() throws IOException {
+
+        final RedactingValueFilter valueFilter = new RedactingValueFilter();
+        final StreamingJsonFilter jsonFilter = new StreamingJsonFilter(StreamingJsonFilter.parsePaths("$[*]"), valueFilter, 10);
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final long count = jsonFilter.filter(new ByteArrayInputStream("[\"aaaaaa\",\"bbbbbb\",\"cccccc\",1]".getBytes(StandardCharsets.UTF_8)), out);
+
+        assertEquals(3, count);
+
+        // Values are sent once the pending values reach the target size.
+        assertEquals(Arrays.asList(2, 1), valueFilter.batchSizes);
+        assertEquals("[\"{{{REDACTED}}}\",\"{{{REDACTED}}}\",\"{{{REDACTED}}}\",1]", new String(out.toByteArray(), StandardCharsets.UTF_8));
+
+    }
+
+    @Test
+    public void sendsValuesTogetherUnderTargetSize() throws IOException {
+
+        final RedactingValueFilter valueFilter = new RedactingValueFilter();
+
+        filter("[\"a\",{\"b\":\"c\"},\"d\"]", valueFilter, "$[*]");
+
+        assertEquals(Arrays.asList(2), valueFilter.batchSizes);
+        assertEquals(Arrays.asList("a", "d"), valueFilter.values);
+
+    }
+
+    @Test
+    public void allowsTrailingWhitespace() throws IOException {
+
+        assertEquals("{\"a\":\"{{{REDACTED}}}\"}", filter("{\"a\":\"b\"}  \n", new RedactingValueFilter(), "$.a"));
+
+    }
+
+    @Test
+    public void rejectsSecondDocument() {
+
+        assertThrows(IOException.class, () -> filter("{\"a\":\"b\"}{\"a\":\"c\"}", new RedactingValueFilter(), "$.a"));
+        assertThrows(IOException.class, () -> filter("{\"a\":\"b\"}\n{\"a\":\"c\"}\n", new RedactingValueFilter(), "$.a"));
+
+    }
+
+    @Test
+    public void rejectsTrailingContent() {
+
+        assertThrows(IOException.class, () -> filter("{\"a\":\"b\"} garbage", new RedactingValueFilter(), "$.a"));
+        assertThrows(IOException.class, () -> filter("[\"b\"],", new RedactingValueFilter(), "$[*]"));
+
+    }
+
+    @Test
+    public void normalizesArrayIndexes() {
+
+        assertEquals("$.a[*].b[*]", StreamingJsonFilter.normalize("$.a[0].b[12]"));
+        assertEquals("$[*]", StreamingJsonFilter.normalize("$[3]"));
+        assertEquals("$.a[]", StreamingJsonFilter.normalize("$.a[]"));
+        assertEquals("$.a[1", StreamingJsonFilter.normalize("$.a[1"));
+
+    }
+
+    @Test
+    public void parsesPaths() {
+
+        assertEquals(new HashSet<>(Arrays.asList("$.a", "$.b[*]")), StreamingJsonFilter.parsePaths(" $.a , ,$.b[*]"));
+        assertThrows(IllegalArgumentException.class, () -> StreamingJsonFilter.parsePaths("$.a,b"));
+        assertThrows(IllegalArgumentException.class, () -> StreamingJsonFilter.parsePaths(" , "));
+
+    }
+
+    @Test
+    public void rejectsPathsThatCanNeverMatch() {
+
+        // Values at these paths would otherwise be copied unfiltered.
+        assertThrows(IllegalArgumentException.class, () -> StreamingJsonFilter.parsePaths("$.names[1]"));
+        assertThrows(IllegalArgumentException.class, () -> StreamingJsonFilter.parsePaths("$.patients[0].name"));
+        assertThrows(IllegalArgumentException.class, () -> StreamingJsonFilter.parsePaths("$['name']"));
+        assertThrows(IllegalArgumentException.class, () -> StreamingJsonFilter.parsePaths("$..name"));
+        assertThrows(IllegalArgumentException.class, () -> StreamingJsonFilter.parsePaths("$.*"));
+        assertThrows(IllegalArgumentException.class, () -> StreamingJsonFilter.parsePaths("$.name."));
+        assertThrows(IllegalArgumentException.class, () -> StreamingJsonFilter.parsePaths("$.a, $.b[0]"));
+
+    }
+
+    private static String filter(String json, ValueFilter valueFilter, String paths) throws IOException {
+
+        final Set<String> parsed = StreamingJsonFilter.parsePaths(paths);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        new StreamingJsonFilter(parsed, valueFilter, 1024).filter(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), out);
+
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+
+    }
+
+    /**
+     * Replaces every value without sending it to Philter and remembers what it was given.
+     */
+    private static class RedactingValueFilter extends ValueFilter {
+
+        private final List<String> values = new ArrayList<>();
+        private final List<Integer> batchSizes = new ArrayList<>();
+
+        private RedactingValueFilter() {
+            super(null, "default", null, 0, null);
+        }
+
+        @Override
+        public List<String> filter(List<String> values) {
+
+            this.values.addAll(values);
+            this.batchSizes.add(values.size());
+
+            final List<String> filtered = new ArrayList<>(values.size());
+
+            for(int i = 0; i < values.size(); i++) {
+                filtered.add("{{{REDACTED}}}");
+            }
+
+            return filtered;
+
+        }
+
+    }
+
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2021 Mountain Fog, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtnfog.philter.record;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FieldPathTest {
+
+    private static final String RECORD = "{\"patient\":{\"name\":\"John Smith\",\"age\":42,\"notes\":null},"
+            + "\"patients\":[{\"name\":\"Jane Doe\"},{\"name\":\"Bob Jones\"},{\"age\":7}],"
+            + "\"aliases\":[\"Johnny\",5,\"J. Smith\"]}";
+
+    @Test
+    public void collectsNamedField() {
+
+        assertEquals(Arrays.asList("John Smith"), collect("$.patient.name", RECORD));
+
+    }
+
+    @Test
+    public void collectsEveryElementOfArray() {
+
+        assertEquals(Arrays.asList("Jane Doe", "Bob Jones"), collect("$.patients[*].name", RECORD));
+        assertEquals(Arrays.asList("Johnny", "J. Smith"), collect("$.aliases[*]", RECORD));
+
+    }
+
+    @Test
+    public void collectsTopLevelArrayRecord() {
+
+        assertEquals(Arrays.asList("a", "b"), collect("$[*].name", "[{\"name\":\"a\"},{\"name\":\"b\"}]"));
+
+    }
+
+    @Test
+    public void doesNotDescendIntoArraysWithoutEveryElement() {
+
+        // Arrays are only descended into where the path says so.
+        assertTrue(collect("$.patients.name", RECORD).isEmpty());
+
+    }
+
+    @Test
+    public void skipsValuesThatAreNotStrings() {
+
+        assertTrue(collect("$.patient.age", RECORD).isEmpty());
+        assertTrue(collect("$.patient.notes", RECORD).isEmpty());
+        assertTrue(collect("$.patient", RECORD).isEmpty());
+        assertTrue(collect("$.missing.name", RECORD).isEmpty());
+        assertTrue(collect("$.patient[*]", RECORD).isEmpty());
+
+    }
+
+    @Test
+    public void replacesValuesInPlace() {
+
+        final JsonElement record = JsonParser.parseString(RECORD);
+        final List<FieldValue> values = new ArrayList<>();
+
+        FieldPath.parse("$.patient.name").collect(record, values);
+        FieldPath.parse("$.aliases[*]").collect(record, values);
+
+        for(final FieldValue value : values) {
+            value.setValue("{{{REDACTED}}}");
+        }
+
+        assertEquals("{{{REDACTED}}}", record.getAsJsonObject().getAsJsonObject("patient").get("name").getAsString());
+        assertEquals("[\"{{{REDACTED}}}\",5,\"{{{REDACTED}}}\"]", record.getAsJsonObject().get("aliases").toString());
+
+    }
+
+    @Test
+    public void parsesList() {
+
+        final List<FieldPath> paths = FieldPath.parseList(" $.patient.name , ,$.patients[*].name ");
+
+        assertEquals(2, paths.size());
+        assertEquals("$.patient.name", paths.get(0).toString());
+        assertEquals("$.patients[*].name", paths.get(1).toString());
+
+    }
+
+    @Test
+    public void rejectsPathsThatCanNeverMatch() {
+
+        assertThrows(IllegalArgumentException.class, () -> FieldPath.parse("$"));
+        assertThrows(IllegalArgumentException.class, () -> FieldPath.parse("/patient/name"));
+        assertThrows(IllegalArgumentException.class, () -> FieldPath.parse("$.patients[0].name"));
+        assertThrows(IllegalArgumentException.class, () -> FieldPath.parse("$['patient']"));
+        assertThrows(IllegalArgumentException.class, () -> FieldPath.parseList(" , "));
+        assertThrows(IllegalArgumentException.class, () -> FieldPath.parseList("$.patient.name,$.patients[1]"));
+
+    }
+
+    private static List<String> collect(String path, String json) {
+
+        final List<FieldValue> values = new ArrayList<>();
+
+        FieldPath.parse(path).collect(JsonParser.parseString(json), values);
+
+        final List<String> strings = new ArrayList<>();
+
+        for(final FieldValue value : values) {
+            strings.add(value.getValue());
+        }
+
+        return strings;
+
+    }
+
+}
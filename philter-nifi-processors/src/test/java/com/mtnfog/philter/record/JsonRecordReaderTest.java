@@ -0,0 +1,167 @@
+/*
+ * Copyright 2021 Mountain Fog, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtnfog.philter.record;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class JsonRecordReaderTest {
+
+    private static final Gson GSON = new Gson();
+
+    @Test
+    public void readsArrayElements() throws IOException {
+
+        final JsonRecordReader reader = reader(" [ {\"a\":1} , {\"b\":\"x\"}, [2] ] \n");
+
+        assertTrue(reader.isArray());
+        assertEquals("{\"a\":1}", reader.next().toString());
+        assertEquals("{\"b\":\"x\"}", reader.next().toString());
+        assertEquals("[2]", reader.next().toString());
+        assertNull(reader.next());
+        assertNull(reader.next());
+
+    }
+
+    @Test
+    public void readsNewlineDelimitedRecords() throws IOException {
+
+        assertEquals(Arrays.asList("{\"a\":1}", "{\"b\":\"}{\\\"[\"}", "[1,2]", "{\"c\":{\"d\":[]}}"),
+                readAll("{\"a\":1}\n{\"b\":\"}{\\\"[\"}\r\n\n[1,2]  {\"c\":{\"d\":[]}}\n"));
+
+    }
+
+    @Test
+    public void readsRecordsLargerThanBuffer() throws IOException {
+
+        final StringBuilder value = new StringBuilder();
+
+        for(int i = 0; i < 20000; i++) {
+            value.append((char) ('a' + i % 26));
+        }
+
+        final String record = "{\"v\":\"" + value + "\"}";
+
+        assertEquals(Arrays.asList(record, record), readAll(record + "\n" + record));
+        assertEquals(Arrays.asList(record, record), readAll("[" + record + "," + record + "]"));
+
+    }
+
+    @Test
+    public void readsEmptyRecordSets() throws IOException {
+
+        assertTrue(readAll("").isEmpty());
+        assertTrue(readAll(" \n ").isEmpty());
+        assertTrue(readAll("[]").isEmpty());
+        assertTrue(reader("[ ]").isArray());
+        assertFalse(reader("").isArray());
+
+    }
+
+    @Test
+    public void skipsByteOrderMark() throws IOException {
+
+        assertEquals(Arrays.asList("{\"a\":1}"), readAll("\uFEFF{\"a\":1}"));
+        assertEquals(Arrays.asList("{\"a\":1}"), readAll("\uFEFF[{\"a\":1}]"));
+
+    }
+
+    @Test
+    public void failsOnText() {
+
+        // A lenient parser reads this as a series of bare strings that have no fields to filter.
+        assertThrows(IOException.class, () -> readAll("Patient John Smith SSN 123-45-6789"));
+        assertThrows(IOException.class, () -> readAll("{\"a\":1}\nPatient John Smith SSN 123-45-6789"));
+
+    }
+
+    @Test
+    public void failsOnRecordsThatAreNotObjectsOrArrays() {
+
+        assertThrows(IOException.class, () -> readAll("\"John Smith\""));
+        assertThrows(IOException.class, () -> readAll("123456789"));
+        assertThrows(IOException.class, () -> readAll("null"));
+        assertThrows(IOException.class, () -> readAll("[{\"a\":1},\"John Smith\"]"));
+        assertThrows(IOException.class, () -> readAll("[true]"));
+
+    }
+
+    @Test
+    public void failsOnLenientSyntax() {
+
+        assertThrows(IOException.class, () -> readAll("{a:1}"));
+        assertThrows(IOException.class, () -> readAll("{\"a\":John}"));
+        assertThrows(IOException.class, () -> readAll("{'a':1}"));
+        assertThrows(IOException.class, () -> readAll("{\"a\":1;\"b\":2}"));
+        assertThrows(IOException.class, () -> readAll("[{\"a\":1};{\"b\":2}]"));
+        assertThrows(IOException.class, () -> readAll("{\"a\":1} // John Smith"));
+        assertThrows(IOException.class, () -> readAll("{\"a\":[1,,2]}"));
+
+    }
+
+    @Test
+    public void failsOnTrailingContent() {
+
+        assertThrows(IOException.class, () -> readAll("[{\"a\":1}] John Smith"));
+        assertThrows(IOException.class, () -> readAll("[{\"a\":1}][{\"b\":2}]"));
+        assertThrows(IOException.class, () -> readAll("{\"a\":1}}"));
+        assertThrows(IOException.class, () -> readAll("{\"a\":1}\n,{\"b\":2}"));
+
+    }
+
+    @Test
+    public void failsOnTruncatedRecords() {
+
+        assertThrows(IOException.class, () -> readAll("{\"a\":1"));
+        assertThrows(IOException.class, () -> readAll("[{\"a\":1}"));
+        assertThrows(IOException.class, () -> readAll("{\"a\":\"John"));
+
+    }
+
+    private static JsonRecordReader reader(String json) throws IOException {
+        return new JsonRecordReader(GSON, new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static List<String> readAll(String json) throws IOException {
+
+        final JsonRecordReader reader = reader(json);
+        final List<String> records = new ArrayList<>();
+
+        JsonElement record;
+
+        while((record = reader.next()) != null) {
+            records.add(record.toString());
+        }
+
+        return records;
+
+    }
+
+}
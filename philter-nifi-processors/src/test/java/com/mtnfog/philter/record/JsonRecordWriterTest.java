@@ -0,0 +1,70 @@
+/*
+ * Copyright 2021 Mountain Fog, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtnfog.philter.record;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class JsonRecordWriterTest {
+
+    private static final Gson GSON = new GsonBuilder().serializeNulls().disableHtmlEscaping().create();
+
+    @Test
+    public void writesArray() throws IOException {
+
+        assertEquals("[{\"a\":1},{\"b\":null},[\"<é>\"]]", write(true, "{\"a\":1}", "{\"b\":null}", "[\"<é>\"]"));
+
+    }
+
+    @Test
+    public void writesNewlineDelimitedRecords() throws IOException {
+
+        assertEquals("{\"a\":1}\n{\"b\":null}\n", write(false, "{\"a\":1}", "{\"b\":null}"));
+
+    }
+
+    @Test
+    public void writesEmptyRecordSets() throws IOException {
+
+        assertEquals("[]", write(true));
+        assertEquals("", write(false));
+
+    }
+
+    private static String write(boolean array, String... records) throws IOException {
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final JsonRecordWriter writer = new JsonRecordWriter(GSON, out, array);
+
+        for(final String record : records) {
+            writer.write(JsonParser.parseString(record));
+        }
+
+        writer.finish();
+
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+
+    }
+
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2021 Mountain Fog, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtnfog.philter.record;
+
+import com.google.gson.Gson;
+import com.mtnfog.philter.client.ValueFilter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class RecordSetFilterTest {
+
+    private static final Gson GSON = new Gson();
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void filtersFieldsOnCallingThread() throws IOException {
+
+        final RecordSetFilter filter = new RecordSetFilter(GSON, FieldPath.parseList("$.name,$.aliases[*]"),
+                new UpperCaseValueFilter(0), 2, null, 1);
+
+        final String in = "{\"id\":1,\"name\":\"john\",\"aliases\":[\"johnny\",2]}\n{\"id\":2}\n{\"id\":3,\"name\":\"jane\"}\n";
+
+        assertEquals("{\"id\":1,\"name\":\"JOHN\",\"aliases\":[\"JOHNNY\",2]}\n{\"id\":2}\n{\"id\":3,\"name\":\"JANE\"}\n", filter(filter, in, 3));
+
+    }
+
+    @Test
+    public void keepsRecordOrderWhenBatchesCompleteOutOfOrder() throws IOException {
+
+        final StringBuilder in = new StringBuilder("[");
+        final StringBuilder expected = new StringBuilder("[");
+
+        for(int i = 0; i < 500; i++) {
+
+            final String separator = i == 0 ? "" : ",";
+
+            in.append(separator).append("{\"id\":").append(i).append(",\"name\":\"name ").append(i).append("\"}");
+            expected.append(separator).append("{\"id\":").append(i).append(",\"name\":\"NAME ").append(i).append("\"}");
+
+        }
+
+        in.append("]");
+        expected.append("]");
+
+        // Each batch sleeps for a random time so later batches often finish before earlier ones.
+        final RecordSetFilter filter = new RecordSetFilter(GSON, FieldPath.parseList("$.name"),
+                new UpperCaseValueFilter(20), 7, executor, 4);
+
+        assertEquals(expected.toString(), filter(filter, in.toString(), 500));
+
+    }
+
+    @Test
+    public void failsWhenBatchFails() {
+
+        final ValueFilter failing = new ValueFilter(null, "default", null, 0, null) {
+
+            @Override
+            public List<String> filter(List<String> values) throws IOException {
+                throw new IOException("Philter is unavailable.");
+            }
+
+        };
+
+        final RecordSetFilter filter = new RecordSetFilter(GSON, FieldPath.parseList("$.name"), failing, 1, executor, 4);
+
+        assertThrows(IOException.class, () -> filter(filter, "{\"name\":\"a\"}\n{\"name\":\"b\"}", 2));
+
+    }
+
+    @Test
+    public void failsOnRecordSetThatIsNotJson() {
+
+        final RecordSetFilter filter = new RecordSetFilter(GSON, FieldPath.parseList("$.name"),
+                new UpperCaseValueFilter(0), 10, null, 1);
+
+        assertThrows(IOException.class, () -> filter(filter, "Patient John Smith SSN 123-45-6789", 0));
+
+    }
+
+    private static String filter(RecordSetFilter filter, String in, long expectedCount) throws IOException {
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        assertEquals(expectedCount, filter.filter(new ByteArrayInputStream(in.getBytes(StandardCharsets.UTF_8)), out));
+
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+
+    }
+
+    private static class UpperCaseValueFilter extends ValueFilter {
+
+        private final int maxSleepMs;
+        private final Random random = new Random(42);
+
+        private UpperCaseValueFilter(int maxSleepMs) {
+            super(null, "default", null, 0, null);
+            this.maxSleepMs = maxSleepMs;
+        }
+
+        @Override
+        public List<String> filter(List<String> values) throws IOException {
+
+            if(maxSleepMs > 0) {
+
+                try {
+                    Thread.sleep(random.nextInt(maxSleepMs));
+                } catch (final InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(ex);
+                }
+
+            }
+
+            final List<String> filtered = new ArrayList<>(values.size());
+
+            for(final String value : values) {
+                filtered.add(value.toUpperCase());
+            }
+
+            return filtered;
+
+        }
+
+    }
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2021 Mountain Fog, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtnfog.philter.text;
+
+import com.mtnfog.philter.model.Span;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DocumentBatchTest {
+
+    @Test
+    public void joinsDocuments() {
+
+        final DocumentBatch batch = new DocumentBatch(Arrays.asList("John Smith", "", "123-45-6789"));
+
+        assertEquals("John Smith\n\n\n\n123-45-6789", batch.getText());
+
+    }
+
+    @Test
+    public void splitsSpansToDocuments() {
+
+        final List<String> documents = Arrays.asList("His name is John.", "No identifiers.", "SSN 123-45-6789 and Jane.");
+        final DocumentBatch batch = new DocumentBatch(documents);
+
+        final int third = batch.getText().indexOf("SSN");
+
+        final List<List<Span>> split = batch.split(Arrays.asList(
+                span(12, 16, "person"),
+                span(third + 4, third + 15, "ssn"),
+                span(third + 20, third + 24, "person")));
+
+        assertEquals(3, split.size());
+
+        assertEquals(1, split.get(0).size());
+        assertEquals(12, split.get(0).get(0).getCharacterStart());
+        assertEquals(16, split.get(0).get(0).getCharacterEnd());
+
+        assertTrue(split.get(1).isEmpty());
+
+        assertEquals(2, split.get(2).size());
+        assertEquals("SSN [ssn] and [person].", SpanSplicer.splice(documents.get(2), split.get(2)));
+
+    }
+
+    @Test
+    public void splitsSpansAtDocumentEdges() {
+
+        final DocumentBatch batch = new DocumentBatch(Arrays.asList("John", "Jane"));
+
+        final List<List<Span>> split = batch.split(Arrays.asList(span(0, 4, "person"), span(6, 10, "person")));
+
+        assertEquals("[person]", SpanSplicer.splice("John", split.get(0)));
+        assertEquals("[person]", SpanSplicer.splice("Jane", split.get(1)));
+
+    }
+
+    @Test
+    public void splitsNoSpans() {
+
+        final List<List<Span>> split = new DocumentBatch(Arrays.asList("a", "b")).split(Collections.emptyList());
+
+        assertEquals(2, split.size());
+        assertTrue(split.get(0).isEmpty());
+        assertTrue(split.get(1).isEmpty());
+
+    }
+
+    @Test
+    public void failsSpanCrossingDocuments() {
+
+        final DocumentBatch batch = new DocumentBatch(Arrays.asList("John", "Smith"));
+
+        assertNull(batch.split(Collections.singletonList(span(0, 11, "person"))));
+
+    }
+
+    @Test
+    public void failsSpanInSeparator() {
+
+        final DocumentBatch batch = new DocumentBatch(Arrays.asList("John", "Smith"));
+
+        assertNull(batch.split(Collections.singletonList(span(4, 5, "person"))));
+        assertNull(batch.split(Collections.singletonList(span(5, 8, "person"))));
+
+    }
+
+    @Test
+    public void failsSpanInEmptyDocument() {
+
+        final DocumentBatch batch = new DocumentBatch(Arrays.asList("John", "", "Smith"));
+
+        // The empty document starts at 6, between the two separators.
+        assertNull(batch.split(Collections.singletonList(span(6, 7, "person"))));
+
+    }
+
+    private static Span span(int start, int end, String filterType) {
+
+        final Span span = new Span();
+
+        span.setCharacterStart(start);
+        span.setCharacterEnd(end);
+        span.setFilterType(filterType);
+        span.setReplacement("[" + filterType + "]");
+
+        return span;
+
+    }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2021 Mountain Fog, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtnfog.philter.text;
+
+import com.mtnfog.philter.model.Span;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class IdentifierScannerTest {
+
+    private static final String REDACTION_FORMAT = "{{{REDACTED-%t}}}";
+
+    @Test
+    public void findsBuiltInTypes() {
+
+        final IdentifierScanner scanner = new IdentifierScanner(IdentifierScanner.BUILT_IN_TYPES, null, REDACTION_FORMAT);
+
+        final String text = "SSN 123-45-6789, call (555) 555-5555 or email john.smith@example.com.";
+        final List<Span> spans = scanner.scan(text);
+
+        assertEquals(3, spans.size());
+
+        assertEquals(IdentifierScanner.SSN, spans.get(0).getFilterType());
+        assertEquals("123-45-6789", spans.get(0).getText());
+        assertEquals(4, spans.get(0).getCharacterStart());
+        assertEquals(15, spans.get(0).getCharacterEnd());
+        assertEquals("{{{REDACTED-ssn}}}", spans.get(0).getReplacement());
+
+        assertEquals(IdentifierScanner.PHONE_NUMBER, spans.get(1).getFilterType());
+        assertEquals("(555) 555-5555", spans.get(1).getText());
+
+        assertEquals(IdentifierScanner.EMAIL_ADDRESS, spans.get(2).getFilterType());
+        assertEquals("john.smith@example.com", spans.get(2).getText());
+
+    }
+
+    @Test
+    public void skipsNumbersThatAreNotIdentifiers() {
+
+        final IdentifierScanner scanner = new IdentifierScanner(IdentifierScanner.BUILT_IN_TYPES, null, REDACTION_FORMAT);
+
+        assertTrue(scanner.scan("000-12-3456 666-12-3456 123-00-4567 123-45-0000 x123-45-6789").isEmpty());
+
+    }
+
+    @Test
+    public void findsOnlyGivenTypes() {
+
+        final IdentifierScanner scanner = new IdentifierScanner(Collections.singletonList(IdentifierScanner.EMAIL_ADDRESS), null, REDACTION_FORMAT);
+
+        assertEquals("SSN 123-45-6789 {{{REDACTED-email-address}}}", scanner.redact("SSN 123-45-6789 a@example.org"));
+
+    }
+
+    @Test
+    public void findsMedicalRecordNumbers() {
+
+        final IdentifierScanner scanner = new IdentifierScanner(Arrays.asList(IdentifierScanner.SSN), "MRN-\\d{6}", REDACTION_FORMAT);
+
+        assertEquals("Patient {{{REDACTED-medical-record-number}}} has SSN {{{REDACTED-ssn}}}.",
+                scanner.redact("Patient MRN-123456 has SSN 123-45-6789."));
+
+    }
+
+    @Test
+    public void findsMedicalRecordNumbersWithNamedBackreference() {
+
+        final IdentifierScanner scanner = new IdentifierScanner(Collections.emptyList(), "(?<c>[A-Z])\\k<c>\\d{4}", REDACTION_FORMAT);
+
+        assertEquals("{{{REDACTED-medical-record-number}}} AB1234", scanner.redact("AA1234 AB1234"));
+
+    }
+
+    @Test
+    public void findsNothingWithoutTypes() {
+
+        final IdentifierScanner scanner = new IdentifierScanner(Collections.emptyList(), null, REDACTION_FORMAT);
+
+        assertTrue(scanner.scan("123-45-6789").isEmpty());
+
+    }
+
+    @Test
+    public void rejectsUnknownType() {
+
+        assertThrows(IllegalArgumentException.class, () -> new IdentifierScanner(Arrays.asList("ssn", "passport"), null, REDACTION_FORMAT));
+
+    }
+
+    @Test
+    public void rejectsFormatThatIsNotValid() {
+
+        assertThrows(IllegalArgumentException.class, () -> IdentifierScanner.validateFormat("MRN-(\\d+"));
+
+        // A format that only compiles when combined with the other formats.
+        assertThrows(IllegalArgumentException.class, () -> IdentifierScanner.validateFormat("\\d+)|(\\d+"));
+
+    }
+
+    @Test
+    public void rejectsFormatThatMatchesEmptyText() {
+
+        assertThrows(IllegalArgumentException.class, () -> IdentifierScanner.validateFormat("\\d*"));
+        assertThrows(IllegalArgumentException.class, () -> IdentifierScanner.validateFormat("MRN|"));
+        assertThrows(IllegalArgumentException.class,
+                () -> new IdentifierScanner(IdentifierScanner.BUILT_IN_TYPES, "(?:MRN-\\d+)?", REDACTION_FORMAT));
+
+    }
+
+    @Test
+    public void rejectsNumberedBackreference() {
+
+        assertThrows(IllegalArgumentException.class, () -> IdentifierScanner.validateFormat("([A-Z])\\1\\d{4}"));
+        assertThrows(IllegalArgumentException.class,
+                () -> new IdentifierScanner(IdentifierScanner.BUILT_IN_TYPES, "(\\d)\\1{5}", REDACTION_FORMAT));
+
+    }
+
+    @Test
+    public void allowsEscapedAndQuotedDigits() {
+
+        IdentifierScanner.validateFormat("\\\\1\\d{6}");
+        IdentifierScanner.validateFormat("\\Q\\1\\E\\d{6}");
+        IdentifierScanner.validateFormat("\\0101\\d{6}");
+
+    }
+
+}
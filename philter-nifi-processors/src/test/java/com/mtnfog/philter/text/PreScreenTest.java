@@ -0,0 +1,136 @@
+/*
+ * Copyright 2021 Mountain Fog, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtnfog.philter.text;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PreScreenTest {
+
+    private static final String CLEAN = "nothing to see here, move along.\n";
+
+    @Test
+    public void findsDigits() throws IOException {
+
+        final PreScreen preScreen = new PreScreen(Collections.singletonList(PreScreen.DIGITS));
+
+        assertTrue(hasCandidates(preScreen, "ssn 123-45-6789"));
+        assertTrue(hasCandidates(preScreen, "0"));
+        assertTrue(hasCandidates(preScreen, "9"));
+        assertFalse(hasCandidates(preScreen, "John Smith john@example.com Größe"));
+
+    }
+
+    @Test
+    public void findsUppercase() throws IOException {
+
+        final PreScreen preScreen = new PreScreen(Collections.singletonList(PreScreen.UPPERCASE));
+
+        assertTrue(hasCandidates(preScreen, "his name is John"));
+        assertTrue(hasCandidates(preScreen, "A"));
+        assertTrue(hasCandidates(preScreen, "Z"));
+        assertFalse(hasCandidates(preScreen, "john 123 john@example.com größe"));
+
+    }
+
+    @Test
+    public void findsAtSign() throws IOException {
+
+        final PreScreen preScreen = new PreScreen(Collections.singletonList(PreScreen.AT_SIGN));
+
+        assertTrue(hasCandidates(preScreen, "john@example.com"));
+        assertFalse(hasCandidates(preScreen, "John Smith 123 Größe"));
+
+    }
+
+    @Test
+    public void findsNonAscii() throws IOException {
+
+        final PreScreen preScreen = new PreScreen(Collections.singletonList(PreScreen.NON_ASCII));
+
+        assertTrue(hasCandidates(preScreen, "Größe"));
+        assertTrue(hasCandidates(preScreen, "日本"));
+        assertTrue(hasCandidates(preScreen, "😀"));
+        assertFalse(hasCandidates(preScreen, "John Smith 123 john@example.com ~\u007f"));
+
+    }
+
+    @Test
+    public void findsAnyEnabledClass() throws IOException {
+
+        final PreScreen preScreen = new PreScreen(PreScreen.CHARACTER_CLASSES);
+
+        assertTrue(hasCandidates(preScreen, "5"));
+        assertTrue(hasCandidates(preScreen, "J"));
+        assertTrue(hasCandidates(preScreen, "@"));
+        assertTrue(hasCandidates(preScreen, "é"));
+        assertFalse(hasCandidates(preScreen, CLEAN));
+
+    }
+
+    @Test
+    public void findsCandidatePastFirstBuffer() throws IOException {
+
+        final PreScreen preScreen = new PreScreen(Collections.singletonList(PreScreen.DIGITS));
+        final StringBuilder sb = new StringBuilder();
+
+        while(sb.length() < 20000) {
+            sb.append(CLEAN);
+        }
+
+        assertFalse(hasCandidates(preScreen, sb.toString()));
+        assertTrue(hasCandidates(preScreen, sb.append('7').toString()));
+
+    }
+
+    @Test
+    public void findsNothingInEmptyContent() throws IOException {
+
+        assertFalse(hasCandidates(new PreScreen(PreScreen.CHARACTER_CLASSES), ""));
+
+    }
+
+    @Test
+    public void findsNothingWithAllClassesDisabled() throws IOException {
+
+        final PreScreen preScreen = new PreScreen(Collections.emptyList());
+
+        assertFalse(hasCandidates(preScreen, "John Smith 123-45-6789 john@example.com Größe"));
+        assertFalse(hasCandidates(preScreen, ""));
+
+    }
+
+    @Test
+    public void rejectsUnknownClass() {
+
+        assertThrows(IllegalArgumentException.class, () -> new PreScreen(Arrays.asList(PreScreen.DIGITS, "lowercase")));
+
+    }
+
+    private static boolean hasCandidates(PreScreen preScreen, String text) throws IOException {
+        return preScreen.hasCandidates(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright 2021 Mountain Fog, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtnfog.philter.text;
+
+import com.mtnfog.philter.model.Span;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SpanSplicerTest {
+
+    @Test
+    public void splicesReplacements() {
+
+        final String text = "His name is John Smith and his SSN is 123-45-6789.";
+
+        final List<Span> spans = Arrays.asList(
+                span(12, 22, "{{{REDACTED-person}}}"),
+                span(38, 49, "{{{REDACTED-ssn}}}"));
+
+        assertEquals("His name is {{{REDACTED-person}}} and his SSN is {{{REDACTED-ssn}}}.", SpanSplicer.splice(text, spans));
+
+    }
+
+    @Test
+    public void splicesSpansAtEdges() {
+
+        assertEquals("[A] b [C]", SpanSplicer.splice("a b c", Arrays.asList(span(0, 1, "[A]"), span(4, 5, "[C]"))));
+
+    }
+
+    @Test
+    public void removesSpansWithoutReplacement() {
+
+        assertEquals("a  c", SpanSplicer.splice("a b c", Collections.singletonList(span(2, 3, null))));
+
+    }
+
+    @Test
+    public void returnsTextWithoutSpans() {
+
+        assertEquals("a b c", SpanSplicer.splice("a b c", Collections.emptyList()));
+
+    }
+
+    @Test
+    public void shiftsSpans() {
+
+        final Span span = span(2, 5, "x");
+        span.setFilterType("ssn");
+        span.setConfidence(0.5);
+
+        final Span shifted = SpanSplicer.shift(span, 10);
+
+        assertEquals(12, shifted.getCharacterStart());
+        assertEquals(15, shifted.getCharacterEnd());
+        assertEquals("ssn", shifted.getFilterType());
+        assertEquals("x", shifted.getReplacement());
+        assertEquals(0.5, shifted.getConfidence());
+
+        // The original span is not changed.
+        assertEquals(2, span.getCharacterStart());
+
+    }
+
+    @Test
+    public void resolvesOverlapsKeepingLongestSpan() {
+
+        final List<Span> spans = new ArrayList<>();
+        spans.add(span(20, 25, "d"));
+        spans.add(span(0, 4, "a"));
+        spans.add(span(2, 10, "b"));
+        spans.add(span(8, 12, "c"));
+        spans.add(span(20, 25, "duplicate"));
+
+        final List<Span> resolved = SpanSplicer.resolveOverlaps(spans);
+
+        assertEquals(2, resolved.size());
+        assertEquals("b", resolved.get(0).getReplacement());
+        assertEquals("d", resolved.get(1).getReplacement());
+
+    }
+
+    @Test
+    public void resolvesOverlapsKeepingAdjacentSpans() {
+
+        final List<Span> resolved = SpanSplicer.resolveOverlaps(Arrays.asList(span(5, 10, "b"), span(0, 5, "a"), span(10, 15, "c")));
+
+        assertEquals(3, resolved.size());
+        assertEquals(0, resolved.get(0).getCharacterStart());
+        assertEquals(5, resolved.get(1).getCharacterStart());
+        assertEquals(10, resolved.get(2).getCharacterStart());
+
+    }
+
+    @Test
+    public void resolvesNoSpans() {
+
+        assertTrue(SpanSplicer.resolveOverlaps(Collections.emptyList()).isEmpty());
+
+    }
+
+    @Test
+    public void splicesBytesLikeText() throws IOException {
+
+        // Two, three and four byte characters, the last of which are a surrogate pair in UTF-16.
+        final String text = "Größe 日本 😀John😀 Smith 123-45-6789 é";
+
+        final List<Span> spans = Arrays.asList(
+                span(0, 5, "[name]"),
+                span(6, 8, null),
+                span(9, 11, "😀"),
+                span(11, 15, "{{{REDACTED-person}}}"),
+                span(15, 17, "ß"),
+                span(30, 35, "[ssn]"),
+                span(36, 37, "e"));
+
+        final String expected = SpanSplicer.splice(text, spans);
+
+        // Every read size puts the reads' boundaries inside every multi-byte character.
+        for(int readSize = 1; readSize <= text.getBytes(StandardCharsets.UTF_8).length + 1; readSize++) {
+            assertEquals(expected, spliceBytes(text, spans, readSize), "read size " + readSize);
+        }
+
+    }
+
+    @Test
+    public void splicesBytesAtEdges() throws IOException {
+
+        final List<Span> spans = Arrays.asList(span(0, 2, "[start]"), span(4, 6, "[end]"));
+
+        assertEquals("[start]日本[end]", spliceBytes("😀日本😀", spans, 1));
+        assertEquals("[start]日本[end]", spliceBytes("😀日本😀", spans, 8192));
+
+    }
+
+    @Test
+    public void copiesBytesWithoutSpans() throws IOException {
+
+        assertEquals("Größe 😀", spliceBytes("Größe 😀", Collections.emptyList(), 3));
+        assertEquals("", spliceBytes("", Collections.emptyList(), 3));
+
+    }
+
+    @Test
+    public void splicesRandomBytesLikeText() throws IOException {
+
+        final Random random = new Random(42);
+        final String[] characters = {"a", " ", "é", "日", "😀", "\n"};
+
+        for(int n = 0; n < 200; n++) {
+
+            final StringBuilder sb = new StringBuilder();
+            final int count = random.nextInt(40);
+
+            for(int i = 0; i < count; i++) {
+                sb.append(characters[random.nextInt(characters.length)]);
+            }
+
+            final String text = sb.toString();
+            final List<Span> spans = new ArrayList<>();
+
+            int position = 0;
+
+            // Spans start and end on whole characters as Philter reports them.
+            while(position < text.length()) {
+
+                final int start = next(text, position, random.nextInt(4));
+                final int end = next(text, start, 1 + random.nextInt(4));
+
+                if(start >= end) {
+                    break;
+                }
+
+                spans.add(span(start, end, random.nextBoolean() ? "[" + spans.size() + "]" : null));
+                position = end;
+
+            }
+
+            assertEquals(SpanSplicer.splice(text, spans), spliceBytes(text, spans, 1 + random.nextInt(8)), text);
+
+        }
+
+    }
+
+    @Test
+    public void failsOnWindows1252Text() {
+
+        // The degree sign is a single byte in Windows-1252 that is a stray continuation byte in UTF-8.
+        final byte[] bytes = "Temp 98°F SSN 123-45-6789 end".getBytes(Charset.forName("windows-1252"));
+        final List<Span> spans = Collections.singletonList(span(14, 25, "{{{REDACTED}}}"));
+
+        for(int readSize = 1; readSize <= bytes.length; readSize++) {
+            final int size = readSize;
+            assertThrows(IOException.class, () -> spliceBytes(bytes, spans, size));
+        }
+
+    }
+
+    @Test
+    public void failsOnMalformedUtf8() {
+
+        final byte[][] malformed = {
+                // A stray continuation byte.
+                {'a', (byte) 0x80, 'b'},
+                // A lead byte without its continuation bytes.
+                {'a', (byte) 0xe6, (byte) 0x97, 'b'},
+                // A lead byte at the end of the content.
+                {'a', (byte) 0xf0, (byte) 0x9f, (byte) 0x98},
+                // Overlong encodings of '/'.
+                {(byte) 0xc0, (byte) 0xaf},
+                {(byte) 0xe0, (byte) 0x80, (byte) 0xaf},
+                // An encoded surrogate.
+                {(byte) 0xed, (byte) 0xa0, (byte) 0x80},
+                // A code point above U+10FFFF.
+                {(byte) 0xf4, (byte) 0x90, (byte) 0x80, (byte) 0x80},
+                // Bytes that never appear in UTF-8.
+                {'a', (byte) 0xff}};
+
+        for(final byte[] bytes : malformed) {
+            assertThrows(IOException.class, () -> spliceBytes(bytes, Collections.emptyList(), 1));
+            assertThrows(IOException.class, () -> spliceBytes(bytes, Collections.emptyList(), 8192));
+        }
+
+    }
+
+    @Test
+    public void acceptsLargestCharacters() throws IOException {
+
+        final String text = "\u07ff\uffff\ud7ff\ue000\udbff\udfff";
+
+        assertEquals(text, spliceBytes(text, Collections.emptyList(), 1));
+
+    }
+
+    private static int next(String text, int position, int characters) {
+
+        for(int i = 0; i < characters && position < text.length(); i++) {
+            position += Character.charCount(text.codePointAt(position));
+        }
+
+        return position;
+
+    }
+
+    private static String spliceBytes(String text, List<Span> spans, int readSize) throws IOException {
+        return spliceBytes(text.getBytes(StandardCharsets.UTF_8), spans, readSize);
+    }
+
+    private static String spliceBytes(byte[] bytes, List<Span> spans, int readSize) throws IOException {
+
+        final InputStream in = new ByteArrayInputStream(bytes) {
+
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, readSize));
+            }
+
+        };
+
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        SpanSplicer.splice(in, out, spans);
+
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+
+    }
+
+    private static Span span(int start, int end, String replacement) {
+
+        final Span span = new Span();
+
+        span.setCharacterStart(start);
+        span.setCharacterEnd(end);
+        span.setReplacement(replacement);
+
+        return span;
+
+    }
+
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright 2021 Mountain Fog, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.mtnfog.philter.text;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TextChunkerTest {
+
+    @Test
+    public void returnsShortTextAsOneChunk() {
+
+        final List<TextChunker.TextChunk> chunks = new TextChunker(100, 10).chunk("His SSN is 123-45-6789.");
+
+        assertEquals(1, chunks.size());
+        assertEquals(0, chunks.get(0).getOffset());
+        assertEquals("His SSN is 123-45-6789.", chunks.get(0).getText());
+
+    }
+
+    @Test
+    public void returnsNoChunksForEmptyText() {
+
+        assertTrue(new TextChunker(100, 10).chunk("").isEmpty());
+
+    }
+
+    @Test
+    public void endsChunksAtSentences() {
+
+        final String text = "One two three. Four five six seven. Eight nine ten.";
+        final List<TextChunker.TextChunk> chunks = new TextChunker(20, 4).chunk(text);
+
+        assertEquals("One two three. ", chunks.get(0).getText());
+        assertChunks(text, chunks, 20);
+
+    }
+
+    @Test
+    public void endsChunksAtWhitespaceWithoutSentences() {
+
+        final String text = "alpha bravo charlie delta echo foxtrot golf hotel india juliett";
+        final List<TextChunker.TextChunk> chunks = new TextChunker(30, 12).chunk(text);
+
+        for(int i = 0; i < chunks.size() - 1; i++) {
+            assertTrue(chunks.get(i).getText().endsWith(" "), chunks.get(i).getText());
+        }
+
+        assertChunks(text, chunks, 30);
+
+    }
+
+    @Test
+    public void overlapsChunks() {
+
+        final String text = "alpha bravo charlie delta echo foxtrot golf hotel india juliett";
+        final List<TextChunker.TextChunk> chunks = new TextChunker(30, 12).chunk(text);
+
+        assertTrue(chunks.size() > 1);
+
+        // Each chunk starts at a word inside the previous chunk.
+        for(int i = 1; i < chunks.size(); i++) {
+
+            final TextChunker.TextChunk previous = chunks.get(i - 1);
+            final int previousEnd = previous.getOffset() + previous.getText().length();
+
+            assertTrue(chunks.get(i).getOffset() < previousEnd);
+            assertTrue(chunks.get(i).getOffset() > previous.getOffset());
+            assertEquals(' ', text.charAt(chunks.get(i).getOffset() - 1));
+
+        }
+
+    }
+
+    @Test
+    public void keepsOverlapWhenNoWordStartsInIt() {
+
+        final String text = "alpha bravo charlie delta echo foxtrot golf hotel";
+        final List<TextChunker.TextChunk> chunks = new TextChunker(20, 3).chunk(text);
+
+        // The first chunk ends after "charlie " and its last 3 characters are "ie " so no word starts in the overlap.
+        assertEquals("alpha bravo charlie ", chunks.get(0).getText());
+        assertEquals(17, chunks.get(1).getOffset());
+        assertChunks(text, chunks, 20);
+
+    }
+
+    @Test
+    public void cutsTextWithoutWhitespace() {
+
+        final StringBuilder sb = new StringBuilder();
+
+        for(int i = 0; i < 50; i++) {
+            sb.append((char) ('a' + i % 26));
+        }
+
+        final List<TextChunker.TextChunk> chunks = new TextChunker(16, 4).chunk(sb.toString());
+
+        assertEquals(16, chunks.get(0).getText().length());
+        assertChunks(sb.toString(), chunks, 16);
+
+    }
+
+    @Test
+    public void doesNotCutSurrogatePairs() {
+
+        final StringBuilder sb = new StringBuilder();
+
+        for(int i = 0; i < 40; i++) {
+            sb.append("😀");
+        }
+
+        sb.insert(0, 'x');
+
+        final List<TextChunker.TextChunk> chunks = new TextChunker(16, 4).chunk(sb.toString());
+
+        for(final TextChunker.TextChunk chunk : chunks) {
+            assertFalse(Character.isLowSurrogate(chunk.getText().charAt(0)));
+            assertFalse(Character.isHighSurrogate(chunk.getText().charAt(chunk.getText().length() - 1)));
+        }
+
+        assertChunks(sb.toString(), chunks, 16);
+
+    }
+
+    @Test
+    public void coversRandomText() {
+
+        final Random random = new Random(42);
+        final String[] words = {"a", "to", "the", "Smith", "123-45-6789", "hospital.", "ok!", "why?", "😀", "Größe"};
+
+        for(int n = 0; n < 100; n++) {
+
+            final StringBuilder sb = new StringBuilder();
+            final int count = random.nextInt(200);
+
+            for(int i = 0; i < count; i++) {
+                sb.append(words[random.nextInt(words.length)]).append(random.nextInt(5) == 0 ? "\n" : " ");
+            }
+
+            final int chunkSize = 10 + random.nextInt(50);
+            final int overlap = random.nextInt(chunkSize / 2);
+            final List<TextChunker.TextChunk> chunks = new TextChunker(chunkSize, overlap).chunk(sb.toString());
+
+            assertChunks(sb.toString(), chunks, chunkSize);
+
+            // Every chunk after the first overlaps the previous one when there is an overlap.
+            for(int i = 1; i < chunks.size() && overlap > 0; i++) {
+                assertTrue(chunks.get(i).getOffset() < chunks.get(i - 1).getOffset() + chunks.get(i - 1).getText().length());
+            }
+
+        }
+
+    }
+
+    @Test
+    public void rejectsLargeOverlap() {
+
+        assertThrows(IllegalArgumentException.class, () -> new TextChunker(100, 50));
+
+    }
+
+    /**
+     * Checks that the chunks are in order, no larger than the chunk size, positioned at their offsets,
+     * and cover the whole text without gaps.
+     */
+    private static void assertChunks(String text, List<TextChunker.TextChunk> chunks, int chunkSize) {
+
+        int covered = 0;
+
+        for(final TextChunker.TextChunk chunk : chunks) {
+
+            assertTrue(chunk.getText().length() <= chunkSize);
+            assertTrue(chunk.getOffset() <= covered);
+            assertEquals(text.substring(chunk.getOffset(), chunk.getOffset() + chunk.getText().length()), chunk.getText());
+
+            covered = chunk.getOffset() + chunk.getText().length();
+
+        }
+
+        assertEquals(text.length(), covered);
+
+    }
+
+}